@@ -0,0 +1,124 @@
+// Arrangement.java (Layer layout shared by every renderer of a melody)
+package astramelody;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * The four accompaniment layers played under every melody note: melody,
+ * chord, arpeggio and pad. Each layer lives on its own channel/track and
+ * sounds a fixed set of voices, each taken from one slot of the chord
+ * voicing that {@link MusicTheory.Harmony} picks for the melody note.
+ *
+ * <p>{@link #forEachEvent} walks those voices once for every renderer, so
+ * what a melody sounds like is decided here and nowhere else.
+ */
+final class Arrangement {
+
+    static final int RESOLUTION = 4;      // ticks per quarter note (Sequence.PPQ)
+    static final int TICKS_PER_NOTE = 4;  // one melody step per quarter note
+    static final int LAYERS = 4;
+
+    static final int MELODY = 0;
+    static final int CHORD = 1;
+    static final int ARP = 2;
+    static final int PAD = 3;
+
+    static final int[] CHANNEL = {0, 1, 2, 3};
+    static final int[] VELOCITY = {100, 60, 50, 30};
+
+    // Per layer: {voicing slot, on tick offset, off tick offset} for each
+    // voice; slot 0 is the melody note, 1-3 the chord from low to high
+    static final int[][] VOICES = {
+            {0, 0, 2},
+            {1, 0, 4, 2, 0, 4, 3, 0, 4},
+            {1, 0, 1, 2, 1, 2, 3, 2, 3},
+            {0, 0, 8}
+    };
+
+    private Arrangement() {
+    }
+
+    static int voiceCount(int layer) {
+        return VOICES[layer].length / 3;
+    }
+
+    static int slot(int layer, int voice) {
+        return VOICES[layer][voice * 3];
+    }
+
+    static int onOffset(int layer, int voice) {
+        return VOICES[layer][voice * 3 + 1];
+    }
+
+    static int offOffset(int layer, int voice) {
+        return VOICES[layer][voice * 3 + 2];
+    }
+
+    /** Every voice of the arrangement of {@code melody}, in step order. */
+    static <E extends Exception> void forEachEvent(Melody melody, Sink<E> sink) throws E {
+        forEachEvent(melody, 0, melody.length(), new MusicTheory.Harmony(melody.key()), 0, LAYERS, sink);
+    }
+
+    /** The voices of one layer of the arrangement of {@code melody}. */
+    static <E extends Exception> void forEachEvent(Melody melody, int layer, Sink<E> sink) throws E {
+        forEachEvent(melody, 0, melody.length(), new MusicTheory.Harmony(melody.key()), layer, layer + 1, sink);
+    }
+
+    /**
+     * The voices of steps {@code from} to {@code to} of {@code melody},
+     * voiced by {@code harmony} as it stands, which moves on with them.
+     * Ticks count from step 0.
+     */
+    static <E extends Exception> void forEachEvent(Melody melody, int from, int to, MusicTheory.Harmony harmony,
+                                                   Sink<E> sink) throws E {
+        forEachEvent(melody, from, to, harmony, 0, LAYERS, sink);
+    }
+
+    private static <E extends Exception> void forEachEvent(Melody melody, int from, int to,
+                                                           MusicTheory.Harmony harmony, int fromLayer,
+                                                           int toLayer, Sink<E> sink) throws E {
+        for (int i = from; i < to; i++) {
+            int note = melody.note(i);
+            sink.step(i, note);
+            if (note == Melody.REST) continue;
+            harmony.next(note);
+            long tick = (long) i * TICKS_PER_NOTE;
+            for (int layer = fromLayer; layer < toLayer; layer++) {
+                for (int v = 0; v < voiceCount(layer); v++) {
+                    sink.voice(layer, v, note + harmony.interval(layer, v),
+                            tick + onOffset(layer, v), tick + offOffset(layer, v));
+                }
+            }
+        }
+    }
+
+    /** Receives the arrangement from {@link #forEachEvent}. */
+    interface Sink<E extends Exception> {
+        /** Every step, rests included, before its voices and before the harmony takes its note. */
+        default void step(int index, int note) throws E {
+        }
+
+        /** One voice of a sounding step; ticks are arrangement ticks and the pitch is unchecked. */
+        void voice(int layer, int voice, int pitch, long onTick, long offTick) throws E;
+    }
+
+    /** Note messages shared between events, one per layer, on/off and pitch. */
+    static final class Messages {
+        private final ShortMessage[] messages = new ShortMessage[LAYERS * 2 * 128];
+
+        ShortMessage get(int layer, boolean on, int pitch) throws InvalidMidiDataException {
+            if (pitch < 0 || pitch > 127) {
+                throw new InvalidMidiDataException("pitch out of range: " + pitch);
+            }
+            int index = (layer * 2 + (on ? 0 : 1)) * 128 + pitch;
+            ShortMessage msg = messages[index];
+            if (msg == null) {
+                msg = new ShortMessage(on ? ShortMessage.NOTE_ON : ShortMessage.NOTE_OFF,
+                        CHANNEL[layer], pitch, VELOCITY[layer]);
+                messages[index] = msg;
+            }
+            return msg;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// ArrangementCompiler.java (Melody -> layered Sequence, with an LRU cache)
+package astramelody;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sound.midi.*;
+
+/**
+ * Turns a melody into the four-track layered {@link Sequence} used for
+ * playback. Compiled sequences are kept in a bounded LRU cache keyed by
+ * melody content and instrument program, so replaying a melody builds it
+ * only once. File export streams through {@link SmfWriter} instead.
+ *
+ * <p>Cached sequences are shared and must be treated as read-only. Tempo is
+ * not part of the sequence; it is applied by whoever plays it.
+ */
+public class ArrangementCompiler {
+
+    private static final ArrangementCompiler SHARED = new ArrangementCompiler(32);
+
+    public static ArrangementCompiler shared() {
+        return SHARED;
+    }
+
+    private final Map<Key, Sequence> cache;
+    private long hits;
+    private long misses;
+
+    public ArrangementCompiler(int capacity) {
+        this.cache = new LinkedHashMap<Key, Sequence>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Sequence> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public Sequence compile(List<Integer> melody, int program) throws InvalidMidiDataException {
+        return compile(Melody.of(melody), program);
+    }
+
+    public Sequence compile(Melody melody, int program) throws InvalidMidiDataException {
+        Key key = new Key(melody, program);
+
+        synchronized (cache) {
+            Sequence cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        Sequence sequence = build(melody, program);
+        synchronized (cache) {
+            cache.put(key, sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Builds a fresh sequence without touching the cache, for one-off
+     * consumers that would only evict useful entries.
+     */
+    public Sequence compileUncached(Melody melody, int program) throws InvalidMidiDataException {
+        return build(melody, program);
+    }
+
+    private static Sequence build(Melody melody, int program) throws InvalidMidiDataException {
+        Telemetry.SequenceBuildEvent event = new Telemetry.SequenceBuildEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Sequence sequence = new Sequence(Sequence.PPQ, Arrangement.RESOLUTION);
+        Track[] tracks = new Track[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            tracks[layer] = sequence.createTrack();
+            ShortMessage msg = new ShortMessage(ShortMessage.PROGRAM_CHANGE, Arrangement.CHANNEL[layer], program, 0);
+            tracks[layer].add(new MidiEvent(msg, 0));
+        }
+
+        // Identical messages are shared between events
+        Arrangement.Messages messages = new Arrangement.Messages();
+        Arrangement.forEachEvent(melody, (layer, v, pitch, on, off) -> {
+            tracks[layer].add(new MidiEvent(messages.get(layer, true, pitch), on));
+            tracks[layer].add(new MidiEvent(messages.get(layer, false, pitch), off));
+        });
+
+        int events = 0;
+        for (Track track : tracks) {
+            events += track.size();
+        }
+        Telemetry.SEQUENCE_BUILD.record(System.nanoTime() - start, events);
+        if (event.shouldCommit()) {
+            event.notes = melody.length();
+            event.events = events;
+            event.commit();
+        }
+        return sequence;
+    }
+
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static final class Key {
+        private final Melody melody;
+        private final int program;
+        private final int hash;
+
+        Key(Melody melody, int program) {
+            this.melody = melody;
+            this.program = program;
+            this.hash = 31 * melody.hashCode() + program;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && program == other.program && melody.equals(other.melody);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+// BatchExporter.java (Headless parallel generation + MIDI/WAV export)
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Generates and writes many melodies without a display or audio device.
+ *
+ * <pre>
+ * java -jar app/target/astramelody.jar batch --key="A Minor" --mood=Sad --instrument=Piano \
+ *     --tempo=100 --bars=16 --count=5000 --out=out [--threads=8] [--seed=42] [--format=wav] \
+ *     [--model=model.bin] [--dedupe[=0.8]] [--attempts=8]
+ * </pre>
+ *
+ * With {@code --format=wav} each melody is rendered to audio by
+ * {@link WavRenderer} instead of written as MIDI; every worker thread
+ * drives its own synthesizer. {@code --model} generates from a trained
+ * {@link MarkovModel} (see {@link MarkovTrainer}).
+ *
+ * <p>{@code --dedupe} rejects melodies that a {@link MelodyIndex} finds
+ * too close to one already written (Jaccard similarity of interval
+ * n-grams at or above the given threshold) and retries with a derived
+ * seed, up to {@code --attempts} times; files are named by the seed that
+ * was kept. Which of two near-duplicates wins depends on thread timing.
+ *
+ * File {@code i} is generated from a seed derived from the base seed and
+ * {@code i}, so a run is reproducible whatever the thread count.
+ */
+public class BatchExporter {
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> opts = parseArgs(args);
+        String key = opts.getOrDefault("key", "C Major");
+        if (MusicTheory.Key.parse(key) == null) {
+            System.err.println("Unknown key " + key + "; expected a root and mode such as \"F# Dorian\"");
+            System.exit(1);
+        }
+        String mood = opts.getOrDefault("mood", "Happy");
+        String instrument = opts.getOrDefault("instrument", "Piano");
+        File outDir = new File(opts.getOrDefault("out", "out"));
+        boolean wav = opts.getOrDefault("format", "mid").equals("wav");
+        int tempo, bars, count, threads, attempts;
+        double dedupe;
+        long seed;
+        try {
+            tempo = intOption(opts, "tempo", 120, 20, 400);
+            bars = intOption(opts, "bars", 8, 1, 65536);
+            count = intOption(opts, "count", 100, 1, Integer.MAX_VALUE);
+            threads = intOption(opts, "threads", Runtime.getRuntime().availableProcessors(), 1, 32767);
+            attempts = intOption(opts, "attempts", 8, 1, Integer.MAX_VALUE);
+            dedupe = dedupeOption(opts);
+            seed = opts.containsKey("seed") ? Long.parseLong(opts.get("seed")) : MelodyGenerator.newSeed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e instanceof NumberFormatException ? "--seed must be an integer" : e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            System.err.println("Cannot create output directory " + outDir);
+            System.exit(1);
+        }
+
+        MarkovModel model = null;
+        if (opts.containsKey("model")) {
+            try {
+                model = MarkovModel.load(new File(opts.get("model")));
+            } catch (IOException e) {
+                System.err.println("Cannot load model: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        BatchExporter exporter = new BatchExporter(key, mood, instrument, tempo, bars, model);
+        exporter.setWav(wav);
+        if (dedupe > 0) exporter.setDedupe(new MelodyIndex(dedupe), attempts);
+        System.out.println("Base seed: " + seed);
+        Result result = exporter.run(count, threads, outDir, seed);
+
+        System.out.printf("Wrote %d files (%d failed) to %s in %.2f s: %.1f files/s, %.1f KB/s%n",
+                result.written, result.failed, outDir, result.seconds,
+                result.written / result.seconds, result.bytes / 1024.0 / result.seconds);
+        if (dedupe > 0) {
+            System.out.printf("Rejected %d near-duplicates; %d slots gave up after %d attempts%n",
+                    result.rejected, count - result.written - result.failed, attempts);
+        }
+        if (result.failed > 0) System.exit(2);
+    }
+
+    // The option's value if it is an integer in [min, max]; the other
+    // subcommands share it so that all of them report bad numbers alike
+    static int intOption(Map<String, String> opts, String name, int defaultValue, int min, int max) {
+        String value = opts.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max) return n;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--" + name + " must be an integer from " + min + " to " + max);
+    }
+
+    // The similarity threshold, 0 for no deduplication
+    private static double dedupeOption(Map<String, String> opts) {
+        String value = opts.get("dedupe");
+        if (value == null) return 0;
+        if (value.equals("true")) return 0.8;
+        try {
+            double threshold = Double.parseDouble(value);
+            if (threshold > 0 && threshold <= 1) return threshold;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--dedupe must be a similarity above 0 and at most 1");
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                opts.put(arg.substring(2), "true");
+            } else {
+                opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return opts;
+    }
+
+    private final MusicTheory.Key key;
+    private final String mood;
+    private final String instrument;
+    private final int tempo;
+    private final int bars;
+
+    private boolean wav;
+    private MelodyIndex index;
+    private int attempts = 1;
+
+    private final MelodyGenerator generator;
+
+    public BatchExporter(String key, String mood, String instrument, int tempo, int bars) {
+        this(key, mood, instrument, tempo, bars, null);
+    }
+
+    public BatchExporter(String key, String mood, String instrument, int tempo, int bars, MarkovModel model) {
+        this.generator = new MelodyGenerator(model);
+        this.key = MusicTheory.Key.parse(key);
+        if (this.key == null) throw new IllegalArgumentException("unknown key: " + key);
+        this.mood = mood;
+        this.instrument = instrument;
+        this.tempo = tempo;
+        this.bars = bars;
+    }
+
+    /** Renders WAV audio instead of writing MIDI files. */
+    public void setWav(boolean wav) {
+        this.wav = wav;
+    }
+
+    /**
+     * Rejects melodies similar to one already exported by this exporter,
+     * trying up to {@code attempts} seeds per file; {@code null} turns it off.
+     */
+    public void setDedupe(MelodyIndex index, int attempts) {
+        this.index = index;
+        this.attempts = Math.max(1, attempts);
+    }
+
+    public Result run(int count, int threads, File outDir, long baseSeed) {
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger rejected = new AtomicInteger();
+        int program = MidiPlayer.programFor(instrument);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+                long seed = SeededRandom.derive(baseSeed, i);
+                try {
+                    Melody melody = generator.generate(key, mood, bars, seed);
+                    if (index != null) {
+                        int attempt = 0;
+                        while (!index.addIfNovel(melody)) {
+                            rejected.incrementAndGet();
+                            if (++attempt == attempts) return;
+                            seed = SeededRandom.derive(seed, attempt);
+                            melody = generator.generate(key, mood, bars, seed);
+                        }
+                    }
+                    File file = new File(outDir, String.format("melody-%06d-%016x.%s", i, seed, wav ? "wav" : "mid"));
+                    if (wav) {
+                        WavRenderer.write(melody, program, tempo, file);
+                    } else {
+                        SmfWriter.write(melody, program, tempo, file);
+                    }
+                    bytes.addAndGet(file.length());
+                    written.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    e.printStackTrace();
+                }
+            })).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(written.get(), failed.get(), rejected.get(), bytes.get(), seconds);
+    }
+
+    public static final class Result {
+        public final int written;
+        public final int failed;
+        public final int rejected;
+        public final long bytes;
+        public final double seconds;
+
+        Result(int written, int failed, int rejected, long bytes, double seconds) {
+            this.written = written;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// CachedChromePanel.java (Panel whose decoration is painted from a cache)
+package astramelody;
+
+import java.awt.*;
+import javax.swing.*;
+
+/**
+ * A non-opaque panel that paints its background decoration once per size
+ * and blits it on every later repaint.
+ */
+public class CachedChromePanel extends JPanel {
+
+    private final ChromeCache chrome;
+
+    CachedChromePanel(ChromeCache.Painter painter) {
+        this.chrome = new ChromeCache(painter);
+        setOpaque(false);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        chrome.draw(g, this, 0);
+    }
+}
@@ -0,0 +1,55 @@
+// ChromeButton.java (Flat bordered button painted from a cache)
+package astramelody;
+
+import java.awt.*;
+import javax.swing.*;
+
+/**
+ * Flat button with a solid background and a line border, both rendered
+ * through a {@link ChromeCache} keyed by the current background colour and
+ * whether the button is pressed, which darkens the fill. Changing the
+ * background (e.g. on hover) swaps between cached images. Any border set
+ * on the button only contributes its insets.
+ */
+public class ChromeButton extends JButton {
+
+    private static final int PRESSED = 1;
+
+    private final Color borderColor;
+    private final int borderWidth;
+    private final ChromeCache chrome = new ChromeCache(this::paintChrome);
+
+    public ChromeButton(String text, Color borderColor, int borderWidth) {
+        super(text);
+        this.borderColor = borderColor;
+        this.borderWidth = borderWidth;
+        setContentAreaFilled(false);
+        setOpaque(false);
+    }
+
+    // The state is the background colour, with the alpha byte standing in
+    // for the pressed flag; the background is always opaque
+    private void paintChrome(Graphics2D g, int w, int h, int state) {
+        Color background = new Color(state | 0xff000000);
+        g.setColor(state >>> 24 == PRESSED ? background.darker() : background);
+        g.fillRect(0, 0, w, h);
+        g.setColor(borderColor);
+        for (int i = 0; i < borderWidth; i++) {
+            g.drawRect(i, i, w - i - i - 1, h - i - i - 1);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        ButtonModel model = getModel();
+        boolean pressed = model.isArmed() && model.isPressed();
+        chrome.draw(g, this, getBackground().getRGB() & 0xffffff | (pressed ? PRESSED : 0) << 24);
+        super.paintComponent(g);
+    }
+
+    @Override
+    protected void paintBorder(Graphics g) {
+        // The border line is part of the cached chrome; the border itself
+        // only provides insets
+    }
+}
@@ -0,0 +1,80 @@
+// ChromeCache.java (Pre-rendered component chrome)
+package astramelody;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps a component's decoration rendered in translucent images so that
+ * repaints are a single blit. An image is rebuilt only when the size or
+ * the caller's state key changes; a few states are kept so hover and
+ * press toggles never re-render. Images are rendered at the scale of the
+ * screen being painted and copied pixel for pixel, so they stay sharp on
+ * HiDPI displays.
+ */
+final class ChromeCache {
+
+    interface Painter {
+        /** Paints in component coordinates; {@code g} is already scaled for the screen. */
+        void paint(Graphics2D g, int width, int height, int state);
+    }
+
+    private static final int SLOTS = 4;
+
+    private final Painter painter;
+    private final BufferedImage[] images = new BufferedImage[SLOTS];
+    private final int[] states = new int[SLOTS];
+    private int nextSlot;
+
+    ChromeCache(Painter painter) {
+        this.painter = painter;
+    }
+
+    void draw(Graphics g, Component c, int state) {
+        int w = c.getWidth();
+        int h = c.getHeight();
+        if (w <= 0 || h <= 0) return;
+        Graphics2D g2 = (Graphics2D) g;
+        AffineTransform transform = g2.getTransform();
+        BufferedImage image = image(c, w, h, transform.getScaleX(), transform.getScaleY(), state);
+        // One image pixel to one device pixel
+        g2.setTransform(AffineTransform.getTranslateInstance(
+                Math.round(transform.getTranslateX()), Math.round(transform.getTranslateY())));
+        g2.drawImage(image, 0, 0, null);
+        g2.setTransform(transform);
+    }
+
+    private BufferedImage image(Component c, int w, int h, double scaleX, double scaleY, int state) {
+        int deviceWidth = (int) Math.ceil(w * scaleX);
+        int deviceHeight = (int) Math.ceil(h * scaleY);
+        for (int i = 0; i < SLOTS; i++) {
+            BufferedImage image = images[i];
+            if (image != null && states[i] == state
+                    && image.getWidth() == deviceWidth && image.getHeight() == deviceHeight) {
+                return image;
+            }
+        }
+
+        GraphicsConfiguration gc = c.getGraphicsConfiguration();
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(deviceWidth, deviceHeight, Transparency.TRANSLUCENT)
+                : new BufferedImage(deviceWidth, deviceHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = image.createGraphics();
+        g2.scale(scaleX, scaleY);
+        painter.paint(g2, w, h, state);
+        g2.dispose();
+
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % SLOTS;
+        images[slot] = image;
+        states[slot] = state;
+        return image;
+    }
+
+    void invalidate() {
+        for (int i = 0; i < SLOTS; i++) {
+            images[i] = null;
+        }
+    }
+}
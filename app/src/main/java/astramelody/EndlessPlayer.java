@@ -0,0 +1,109 @@
+// EndlessPlayer.java (Generative playback that never ends)
+package astramelody;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sound.midi.*;
+
+/**
+ * Plays an endless melody for ambient use. Bars are pulled from a
+ * {@link MelodyGenerator.BarStream} one at a time and sent to the
+ * synthesizer's receiver with timestamps a few bars ahead of the play
+ * position, so only the look-ahead window is ever held in memory.
+ *
+ * <p>Relies on the receiver honouring {@code send} timestamps, which the
+ * JDK software synthesizer does.
+ */
+public class EndlessPlayer {
+
+    private static final int LOOKAHEAD_BARS = 2;
+
+    private final MelodyGenerator.BarStream bars;
+    private final MusicTheory.Harmony harmony;
+    private final int program;
+    private final long microsPerTick;
+    private final long microsPerBar;
+
+    // Reused messages; the soft synthesizer copies the bytes of each queued message
+    private final Arrangement.Messages messages = new Arrangement.Messages();
+
+    private Synthesizer synth;
+    private Receiver receiver;
+    private ScheduledExecutorService scheduler;
+    private long startMicros;
+    private long scheduledBars;
+
+    public EndlessPlayer(MelodyGenerator.BarStream bars, int tempoBPM, int program) {
+        this.bars = bars;
+        this.harmony = new MusicTheory.Harmony(bars.key());
+        this.program = program;
+        this.microsPerTick = 60_000_000L / (tempoBPM * (long) Arrangement.RESOLUTION);
+        this.microsPerBar = microsPerTick * Arrangement.TICKS_PER_NOTE * Melody.NOTES_PER_BAR;
+    }
+
+    public synchronized void start() throws MidiUnavailableException, InvalidMidiDataException {
+        if (synth != null) return;
+
+        synth = MidiSystem.getSynthesizer();
+        synth.open();
+        receiver = synth.getReceiver();
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, Arrangement.CHANNEL[layer], program, 0), -1);
+        }
+
+        // Leave one bar of headroom before the first note
+        startMicros = synth.getMicrosecondPosition() + microsPerBar;
+        scheduledBars = 0;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "endless-player");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, microsPerBar / 4);
+        scheduler.scheduleAtFixedRate(this::fill, 0, period, TimeUnit.MICROSECONDS);
+    }
+
+    private synchronized void fill() {
+        if (synth == null) return;
+        try {
+            long horizon = synth.getMicrosecondPosition() + LOOKAHEAD_BARS * microsPerBar;
+            while (startMicros + scheduledBars * microsPerBar < horizon) {
+                int[] notes = new int[Melody.NOTES_PER_BAR];
+                bars.next(notes, 0);
+                scheduleBar(new Melody(notes), startMicros + scheduledBars * microsPerBar);
+                scheduledBars++;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The harmony carries on from the previous bar
+    private void scheduleBar(Melody bar, long barMicros) throws InvalidMidiDataException {
+        Arrangement.forEachEvent(bar, 0, bar.length(), harmony, (layer, v, pitch, on, off) -> {
+            receiver.send(messages.get(layer, true, pitch), barMicros + on * microsPerTick);
+            receiver.send(messages.get(layer, false, pitch), barMicros + off * microsPerTick);
+        });
+    }
+
+    public synchronized boolean isPlaying() {
+        return synth != null;
+    }
+
+    public synchronized long getBarsScheduled() {
+        return scheduledBars;
+    }
+
+    public synchronized void stop() {
+        if (synth == null) return;
+        scheduler.shutdownNow();
+        for (MidiChannel channel : synth.getChannels()) {
+            if (channel != null) channel.allNotesOff();
+        }
+        receiver.close();
+        synth.close();
+        synth = null;
+    }
+}
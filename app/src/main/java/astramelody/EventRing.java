@@ -0,0 +1,76 @@
+// EventRing.java (Lock-free single-producer/single-consumer event queue)
+package astramelody;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size ring of timestamped events for handing data from one
+ * producer thread to one consumer thread without locks or allocation.
+ * Each event is a {@link System#nanoTime()} stamp plus a packed payload.
+ * When the ring is full new events are dropped and counted rather than
+ * blocking the producer.
+ */
+final class EventRing {
+
+    /** Receives drained events in order. */
+    interface Sink {
+        void event(long nanos, long payload);
+    }
+
+    private final long[] times;
+    private final long[] payloads;
+    private final int mask;
+
+    // Next slot to write, published by the producer with release semantics
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to read, published by the consumer
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long dropped; // written by the producer only
+
+    EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        times = new long[capacity];
+        payloads = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Producer side. Returns false, and counts a drop, if the ring is full. */
+    boolean offer(long nanos, long payload) {
+        long h = head.get();
+        if (h - tail.getAcquire() > mask) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) h & mask;
+        times[slot] = nanos;
+        payloads[slot] = payload;
+        head.setRelease(h + 1);
+        return true;
+    }
+
+    /** Consumer side. Hands every published event to {@code sink}; returns how many. */
+    int drain(Sink sink) {
+        long t = tail.get();
+        long h = head.getAcquire();
+        for (long i = t; i < h; i++) {
+            int slot = (int) i & mask;
+            sink.event(times[slot], payloads[slot]);
+        }
+        tail.setRelease(h);
+        return (int) (h - t);
+    }
+
+    int size() {
+        return (int) (head.getAcquire() - tail.getAcquire());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,214 @@
+// EventScheduler.java (Own-clock playback of packed events)
+package astramelody;
+
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.midi.*;
+
+/**
+ * Plays a {@link PackedSequence} by sending its events to a
+ * {@link Receiver} from one dedicated thread, at deadlines computed from
+ * {@link System#nanoTime()} rather than from a sequencer's tick clock.
+ * The thread parks until just before each deadline and spins the rest of
+ * the way, then sends every event due. How late each event went out is
+ * recorded in the {@code scheduleJitter} stage of {@link Telemetry}.
+ *
+ * <p>Dispatch allocates nothing: one {@link ShortMessage} is reused for
+ * every event, so the receiver must not keep messages it is sent, which
+ * holds for the JDK software synthesizer and for hardware outputs. An
+ * optional monitor is sent each event straight after the receiver, under
+ * the same rule.
+ */
+public class EventScheduler {
+
+    // Parked waits end this long before the deadline, which is then spun
+    private static final long SPIN_NANOS = 250_000;
+    private static final int CHANNELS = 16;
+
+    private final Receiver receiver;
+    private final Receiver monitor;
+    private final ShortMessage message = new ShortMessage();
+    private final Thread thread;
+
+    // Guarded by this
+    private PackedSequence sequence;
+    private int index;
+    private boolean looping;
+    private boolean closed;
+    private int tempoBPM = 120;
+    // The deadline of tick t is anchorNanos + (t - anchorTick) * nanosPerTick
+    private long anchorNanos;
+    private double anchorTick;
+    private double nanosPerTick;
+
+    public EventScheduler(Receiver receiver) {
+        this(receiver, null);
+    }
+
+    /** @param monitor also sent every event played, or {@code null} */
+    public EventScheduler(Receiver receiver, Receiver monitor) {
+        this.receiver = receiver;
+        this.monitor = monitor;
+        thread = new Thread(this::run, "event-scheduler");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /** Stops whatever is playing and starts {@code sequence} now, on {@code program}. */
+    public void play(PackedSequence sequence, int program) throws InvalidMidiDataException {
+        synchronized (this) {
+            silence();
+            for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+                message.setMessage(ShortMessage.PROGRAM_CHANGE, Arrangement.CHANNEL[layer], program, 0);
+                receiver.send(message, -1);
+            }
+            this.sequence = sequence;
+            index = 0;
+            anchorTick = 0;
+            anchorNanos = System.nanoTime();
+            nanosPerTick = nanosPerTick(tempoBPM, sequence.getPpq());
+            notifyAll();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /** Changes the tempo from the current position on. */
+    public void setTempo(int tempoBPM) {
+        synchronized (this) {
+            this.tempoBPM = tempoBPM;
+            if (sequence == null) return;
+            long now = System.nanoTime();
+            anchorTick += (now - anchorNanos) / nanosPerTick;
+            anchorNanos = now;
+            nanosPerTick = nanosPerTick(tempoBPM, sequence.getPpq());
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /** Repeats the sequence from the start each time it reaches its length. */
+    public synchronized void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    public synchronized boolean isPlaying() {
+        return sequence != null;
+    }
+
+    /** Ticks played of the current sequence, or -1 if nothing is playing. */
+    public synchronized long getTickPosition() {
+        if (sequence == null) return -1;
+        return (long) (anchorTick + (System.nanoTime() - anchorNanos) / nanosPerTick);
+    }
+
+    public synchronized void stop() {
+        silence();
+    }
+
+    public void close() {
+        synchronized (this) {
+            silence();
+            closed = true;
+            notifyAll();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    public String jitterSummary() {
+        StageStats stats = Telemetry.SCHEDULE_JITTER;
+        return String.format("event dispatch jitter: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms over %d events",
+                stats.getP50Millis(), stats.getP99Millis(), stats.quantileNanos(0.999) / 1e6,
+                stats.getMaxMillis(), stats.getCount());
+    }
+
+    private static double nanosPerTick(int tempoBPM, int ppq) {
+        return 60e9 / ((double) tempoBPM * ppq);
+    }
+
+    private long deadline(long tick) {
+        return anchorNanos + (long) ((tick - anchorTick) * nanosPerTick);
+    }
+
+    // Ends any sounding notes; caller holds the lock
+    private void silence() {
+        if (sequence == null) return;
+        sequence = null;
+        try {
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                message.setMessage(ShortMessage.CONTROL_CHANGE, channel, 123, 0); // all notes off
+                receiver.send(message, -1);
+            }
+        } catch (InvalidMidiDataException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long due;
+            synchronized (this) {
+                while (sequence == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                due = nextDeadline();
+                if (due == Long.MIN_VALUE) continue;
+            }
+
+            // Re-read the state after every park: play, stop and tempo
+            // changes unpark the thread and may move the deadline
+            long remaining = due - System.nanoTime();
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+                continue;
+            }
+            while (System.nanoTime() < due) {
+                Thread.onSpinWait();
+            }
+
+            synchronized (this) {
+                if (sequence != null && nextDeadline() == due) dispatch(due);
+            }
+        }
+    }
+
+    // Deadline of the next event, wrapping a looping sequence; Long.MIN_VALUE
+    // once a sequence has finished. Caller holds the lock.
+    private long nextDeadline() {
+        if (index < sequence.size()) {
+            long tick = PackedSequence.tick(sequence.event(index));
+            // Releases that ring past the loop point are sent at the wrap
+            if (looping && tick > sequence.getLengthTicks()) tick = sequence.getLengthTicks();
+            return deadline(tick);
+        }
+        if (looping && sequence.size() > 0) {
+            anchorNanos = deadline(sequence.getLengthTicks());
+            anchorTick = 0;
+            index = 0;
+            return deadline(PackedSequence.tick(sequence.event(0)));
+        }
+        sequence = null;
+        return Long.MIN_VALUE;
+    }
+
+    // Sends every event due at or before the deadline; caller holds the lock
+    private void dispatch(long due) {
+        try {
+            while (index < sequence.size() && nextDeadline() <= due) {
+                long event = sequence.event(index++);
+                message.setMessage(PackedSequence.status(event), PackedSequence.data1(event),
+                        PackedSequence.data2(event));
+                long late = System.nanoTime() - due;
+                receiver.send(message, -1);
+                Telemetry.SCHEDULE_JITTER.record(late, 1);
+                if (monitor != null) monitor.send(message, -1);
+            }
+        } catch (InvalidMidiDataException e) {
+            e.printStackTrace();
+            sequence = null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// FrameGovernor.java (Frame-time telemetry and adaptive quality control)
+package astramelody;
+
+import java.util.Arrays;
+
+/**
+ * Watches how long each animation frame takes to paint and moves a quality
+ * level up or down so the p99 paint time stays inside a fixed budget.
+ * Telemetry is published at the end of every evaluation window and may be
+ * read from any thread; recording a frame never allocates.
+ */
+final class FrameGovernor {
+
+    private static final int WINDOW = 60;        // frames per evaluation
+    private static final int UPGRADE_WINDOWS = 3; // consecutive cheap windows before stepping up
+
+    private final long budgetNanos;
+    private final int maxLevel;
+
+    private final long[] window = new long[WINDOW];
+    private final long[] sorted = new long[WINDOW];
+    private int frames;
+    private int cheapWindows;
+    private int level;
+
+    private long lastFrameStart;
+    private double frameIntervalEma;
+
+    private volatile double fps;
+    private volatile double p99Millis;
+    private volatile double lastMillis;
+    private volatile int publishedLevel;
+
+    FrameGovernor(long budgetNanos, int maxLevel, int initialLevel) {
+        this.budgetNanos = budgetNanos;
+        this.maxLevel = maxLevel;
+        this.level = initialLevel;
+        this.publishedLevel = initialLevel;
+    }
+
+    /**
+     * Records one painted frame.
+     *
+     * @return true if the quality level changed
+     */
+    boolean frame(long startNanos, long paintNanos) {
+        if (lastFrameStart != 0) {
+            long interval = startNanos - lastFrameStart;
+            frameIntervalEma = frameIntervalEma == 0 ? interval : frameIntervalEma * 0.9 + interval * 0.1;
+        }
+        lastFrameStart = startNanos;
+        lastMillis = paintNanos / 1e6;
+
+        window[frames++] = paintNanos;
+        if (frames < WINDOW) return false;
+        frames = 0;
+
+        System.arraycopy(window, 0, sorted, 0, WINDOW);
+        Arrays.sort(sorted);
+        long p99 = sorted[(int) Math.ceil(WINDOW * 0.99) - 1];
+        p99Millis = p99 / 1e6;
+        fps = frameIntervalEma == 0 ? 0 : 1e9 / frameIntervalEma;
+
+        int previous = level;
+        if (p99 > budgetNanos) {
+            level = Math.max(0, level - 1);
+            cheapWindows = 0;
+        } else if (p99 < budgetNanos / 3 && level < maxLevel) {
+            if (++cheapWindows >= UPGRADE_WINDOWS) {
+                level++;
+                cheapWindows = 0;
+            }
+        } else {
+            cheapWindows = 0;
+        }
+        publishedLevel = level;
+        return level != previous;
+    }
+
+    /** Forgets frame timing, e.g. after the animation was paused. */
+    void reset() {
+        frames = 0;
+        cheapWindows = 0;
+        lastFrameStart = 0;
+        frameIntervalEma = 0;
+        fps = 0;
+    }
+
+    int level() {
+        return publishedLevel;
+    }
+
+    double fps() {
+        return fps;
+    }
+
+    double p99Millis() {
+        return p99Millis;
+    }
+
+    double lastMillis() {
+        return lastMillis;
+    }
+}
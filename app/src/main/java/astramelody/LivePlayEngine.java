@@ -0,0 +1,186 @@
+// LivePlayEngine.java (Persistent synthesizer for live keyboard play)
+package astramelody;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sound.midi.*;
+
+/**
+ * Keeps one synthesizer open for live play. Every instrument gets its own
+ * pre-programmed channel, note-offs are scheduled instead of slept, and the
+ * number of sounding voices is capped by stealing the oldest one.
+ */
+public class LivePlayEngine {
+
+    private static final int MAX_VOICES = 16;
+    static final int VELOCITY = 100;
+
+    private final Map<String, Integer> instruments;
+    private final Map<String, Integer> channelByInstrument = new HashMap<>();
+
+    private Synthesizer synth;
+    private MidiChannel[] channels;
+    private ScheduledExecutorService noteOffScheduler;
+
+    // Voice table: one slot per sounding note, -1 = free
+    private final int[] voiceNote = new int[MAX_VOICES];
+    private final int[] voiceChannel = new int[MAX_VOICES];
+    private final long[] voiceStarted = new long[MAX_VOICES];
+    private final long[] voiceGeneration = new long[MAX_VOICES];
+    private long generationCounter;
+
+    // Key-to-noteOn latency, in nanoseconds
+    private long latencyCount;
+    private long latencyTotal;
+    private long latencyMax;
+    private long latencyLast;
+
+    public LivePlayEngine(Map<String, Integer> instruments) {
+        this.instruments = instruments;
+        Arrays.fill(voiceNote, -1);
+    }
+
+    public synchronized void open() throws MidiUnavailableException {
+        if (synth != null) return;
+
+        synth = MidiSystem.getSynthesizer();
+        synth.open();
+        channels = synth.getChannels();
+
+        Soundbank soundbank = synth.getDefaultSoundbank();
+        int channel = 0;
+        for (Map.Entry<String, Integer> entry : instruments.entrySet()) {
+            if (channel == 9) channel++; // skip the percussion channel
+            int program = entry.getValue();
+            if (soundbank != null) {
+                Instrument instrument = soundbank.getInstrument(new Patch(0, program));
+                if (instrument != null) synth.loadInstrument(instrument);
+            }
+            channels[channel].programChange(program);
+            channelByInstrument.put(entry.getKey(), channel);
+            channel++;
+        }
+
+        noteOffScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "live-note-off");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts a note immediately and schedules its release.
+     *
+     * @param inputNanos {@link System#nanoTime()} taken when the key event arrived
+     */
+    public void noteOn(int note, String instrumentName, long durationMillis, long inputNanos) {
+        final int slot;
+        final long generation;
+        synchronized (this) {
+            if (synth == null) return;
+            int channel = channelByInstrument.getOrDefault(instrumentName, 0);
+
+            slot = allocateVoice(note, channel);
+            generation = ++generationCounter;
+            voiceNote[slot] = note;
+            voiceChannel[slot] = channel;
+            voiceStarted[slot] = System.nanoTime();
+            voiceGeneration[slot] = generation;
+
+            channels[channel].noteOn(note, VELOCITY);
+            recordLatency(note, System.nanoTime() - inputNanos);
+        }
+        noteOffScheduler.schedule(() -> release(slot, generation), durationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private int allocateVoice(int note, int channel) {
+        int free = -1;
+        int oldest = 0;
+        for (int i = 0; i < MAX_VOICES; i++) {
+            if (voiceNote[i] == note && voiceChannel[i] == channel) {
+                // Re-trigger of a ringing note reuses its voice
+                channels[channel].noteOff(note);
+                return i;
+            }
+            if (voiceNote[i] == -1) {
+                if (free == -1) free = i;
+            } else if (voiceStarted[i] < voiceStarted[oldest]) {
+                oldest = i;
+            }
+        }
+        if (free != -1) return free;
+
+        // All voices busy: steal the oldest one
+        channels[voiceChannel[oldest]].noteOff(voiceNote[oldest]);
+        return oldest;
+    }
+
+    private synchronized void release(int slot, long generation) {
+        // A stolen or re-triggered voice carries a newer generation
+        if (synth == null || voiceGeneration[slot] != generation || voiceNote[slot] == -1) return;
+        channels[voiceChannel[slot]].noteOff(voiceNote[slot]);
+        voiceNote[slot] = -1;
+    }
+
+    private void recordLatency(int note, long nanos) {
+        Telemetry.LIVE_LATENCY.record(nanos, 1);
+        Telemetry.LiveNoteEvent event = new Telemetry.LiveNoteEvent();
+        if (event.shouldCommit()) {
+            event.note = note;
+            event.latency = nanos;
+            event.commit();
+        }
+
+        latencyLast = nanos;
+        latencyTotal += nanos;
+        latencyCount++;
+        if (nanos > latencyMax) latencyMax = nanos;
+    }
+
+    public synchronized int getActiveVoices() {
+        int active = 0;
+        for (int note : voiceNote) {
+            if (note != -1) active++;
+        }
+        return active;
+    }
+
+    public synchronized double getLastLatencyMillis() {
+        return latencyLast / 1_000_000.0;
+    }
+
+    public synchronized double getAverageLatencyMillis() {
+        return latencyCount == 0 ? 0 : latencyTotal / (double) latencyCount / 1_000_000.0;
+    }
+
+    public synchronized double getMaxLatencyMillis() {
+        return latencyMax / 1_000_000.0;
+    }
+
+    /** Audio the synthesizer buffers between a noteOn and the speaker. */
+    public synchronized double getOutputLatencyMillis() {
+        return synth == null ? 0 : synth.getLatency() / 1000.0;
+    }
+
+    public synchronized String latencySummary() {
+        return String.format("key-to-noteOn: last %.3f ms, avg %.3f ms, max %.3f ms over %d notes; "
+                        + "synthesizer output latency %.1f ms",
+                getLastLatencyMillis(), getAverageLatencyMillis(), getMaxLatencyMillis(), latencyCount,
+                getOutputLatencyMillis());
+    }
+
+    public synchronized void close() {
+        if (synth == null) return;
+        noteOffScheduler.shutdownNow();
+        for (MidiChannel channel : channels) {
+            if (channel != null) channel.allNotesOff();
+        }
+        synth.close();
+        synth = null;
+        Arrays.fill(voiceNote, -1);
+    }
+}
@@ -0,0 +1,174 @@
+// LiveRecorder.java (Timestamped capture of live keyboard play)
+package astramelody;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.sound.midi.*;
+
+/**
+ * Records live play with real timing. Key handlers call {@link #noteOn}
+ * and {@link #noteOff}, which only stamp the event into a preallocated
+ * {@link EventRing}; a background thread drains the ring every few
+ * milliseconds and pairs the events into notes held in primitive arrays.
+ * A take is turned into a timed MIDI track, optionally quantized to a grid.
+ */
+public class LiveRecorder {
+
+    /** Ticks per quarter note of exported takes. */
+    public static final int PPQ = 480;
+
+    private static final int RING_CAPACITY = 1 << 14;
+    private static final long DRAIN_PERIOD_MILLIS = 20;
+    private static final int NOTE_ON = 1 << 16;
+
+    private final EventRing ring = new EventRing(RING_CAPACITY);
+    private final EventRing.Sink sink = this::onEvent;
+    private final ScheduledExecutorService drainer;
+    private ScheduledFuture<?> drainTask;
+    private volatile boolean recording;
+
+    // Assembled notes, in order of their note-on; guarded by this
+    private long[] starts = new long[256];
+    private long[] ends = new long[256];
+    private int[] keys = new int[256]; // (pitch << 8) | velocity
+    private int count;
+    private final int[] openNote = new int[128]; // index of the sounding note per pitch, or -1
+
+    public LiveRecorder() {
+        Arrays.fill(openNote, -1);
+        drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recording-drain");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Discards the previous take and starts capturing. */
+    public synchronized void start() {
+        ring.drain((nanos, payload) -> { });
+        count = 0;
+        Arrays.fill(openNote, -1);
+        recording = true;
+        if (drainTask == null) {
+            drainTask = drainer.scheduleAtFixedRate(this::drain, DRAIN_PERIOD_MILLIS,
+                    DRAIN_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Stops capturing; notes still held end now. */
+    public synchronized void stop() {
+        if (!recording) return;
+        recording = false;
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+        drain();
+        closeOpenNotes(System.nanoTime());
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /** Called on the input thread; never blocks or allocates. */
+    public void noteOn(int pitch, int velocity, long nanos) {
+        if (recording) ring.offer(nanos, NOTE_ON | (pitch << 8) | velocity);
+    }
+
+    /** Called on the input thread; never blocks or allocates. */
+    public void noteOff(int pitch, long nanos) {
+        if (recording) ring.offer(nanos, pitch << 8);
+    }
+
+    public synchronized int getNoteCount() {
+        drain();
+        return count;
+    }
+
+    /** Events lost because the drain thread fell a whole ring behind. */
+    public long getDropped() {
+        return ring.dropped();
+    }
+
+    private synchronized void drain() {
+        ring.drain(sink);
+    }
+
+    private void onEvent(long nanos, long payload) {
+        int pitch = (int) (payload >> 8) & 0x7f;
+        int open = openNote[pitch];
+        if (open >= 0) {
+            // A note-off, or a re-press before the release arrived
+            ends[open] = nanos;
+            openNote[pitch] = -1;
+        }
+        if ((payload & NOTE_ON) != 0) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            starts[count] = nanos;
+            ends[count] = -1;
+            keys[count] = (int) payload & 0xffff;
+            openNote[pitch] = count++;
+        }
+    }
+
+    private void closeOpenNotes(long nanos) {
+        for (int pitch = 0; pitch < openNote.length; pitch++) {
+            if (openNote[pitch] >= 0) {
+                ends[openNote[pitch]] = nanos;
+                openNote[pitch] = -1;
+            }
+        }
+    }
+
+    /**
+     * Builds a one-track sequence of the take, timed from its first note.
+     *
+     * @param quantizeDivision grid steps per quarter note (4 = sixteenths), or 0 for raw timing
+     */
+    public synchronized Sequence toSequence(int tempoBPM, int program, int quantizeDivision)
+            throws InvalidMidiDataException {
+        drain();
+        Sequence sequence = new Sequence(Sequence.PPQ, PPQ);
+        Track track = sequence.createTrack();
+
+        int mpq = 60_000_000 / tempoBPM;
+        track.add(new MidiEvent(new MetaMessage(0x51,
+                new byte[]{(byte) (mpq >> 16), (byte) (mpq >> 8), (byte) mpq}, 3), 0));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, program, 0), 0));
+        if (count == 0) return sequence;
+
+        long origin = starts[0];
+        long now = System.nanoTime();
+        double ticksPerNano = PPQ * tempoBPM / 60e9;
+        long grid = quantizeDivision > 0 ? Math.max(1, PPQ / quantizeDivision) : 1;
+        for (int i = 0; i < count; i++) {
+            long end = ends[i] >= 0 ? ends[i] : now;
+            long onTick = Math.round((starts[i] - origin) * ticksPerNano);
+            long offTick = Math.round((end - origin) * ticksPerNano);
+            if (grid > 1) {
+                onTick = Math.round(onTick / (double) grid) * grid;
+                offTick = Math.round(offTick / (double) grid) * grid;
+            }
+            offTick = Math.max(offTick, onTick + grid);
+
+            int pitch = keys[i] >> 8;
+            int velocity = keys[i] & 0xff;
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, pitch, velocity), onTick));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, pitch, 0), offTick));
+        }
+        return sequence;
+    }
+
+    public void close() {
+        stop();
+        drainer.shutdownNow();
+    }
+}
@@ -0,0 +1,233 @@
+// LiveSequence.java (Bar-editable arrangement that patches in place)
+package astramelody;
+
+import java.util.Arrays;
+import javax.sound.midi.*;
+
+/**
+ * The layered arrangement of a melody whose bars can be rewritten while it
+ * plays. Every melody step owns a fixed slot for each on and off event of
+ * each layer voice, with its own {@link ShortMessage}, so the tracks never
+ * change shape: editing a bar rewrites the bytes of its slots in place and
+ * the sequencer plays the new notes the next time it reaches them, with no
+ * re-sort, reindex or restart. A rest keeps its slots, sending a control
+ * change to an undefined controller, which synthesizers ignore.
+ *
+ * <p>The chord under a note depends on the chord before it, so a change
+ * can re-voice the bars after it. The chord state at the start of each
+ * bar is kept, and re-voicing stops at the first bar whose starting state
+ * is unchanged, or after {@link #REVOICE_BARS} bars: in some modes the
+ * inversions never fall back into step and a change would otherwise
+ * re-voice the rest of the piece. Past that point bars keep the voicing
+ * they had, so an edit costs at most a few bars; the one seam it can
+ * leave is that a file exported from {@link #melody()} leads the voices
+ * afresh from the start.
+ *
+ * <p>Editing is split in two: {@link #setBar} updates the notes and works
+ * out the new slot contents at once, and the returned {@link Patch} writes
+ * them into the sequence. Patches must be applied in the order they were
+ * made, and only while the sequencer is clear of {@link Patch#fromTick()}
+ * to {@link Patch#toTick()}, or an off could miss the on it pairs with.
+ */
+final class LiveSequence {
+
+    private static final int IDLE_CONTROLLER = 102; // undefined; what a rest slot sends
+    private static final int MAX_OFFSET = maxOffset();
+    private static final int VOICES_PER_STEP = voicesPerStep();
+    static final int REVOICE_BARS = 2;
+
+    private final int[] notes;
+    private final MusicTheory.Key key;
+    private final int[] barStates; // chord state before each bar, plus one after the last
+    private final ShortMessage[][] slots = new ShortMessage[Arrangement.LAYERS][];
+    private final Sequence sequence;
+    private Melody melody;
+
+    LiveSequence(Melody melody, int program) throws InvalidMidiDataException {
+        long start = System.nanoTime();
+        this.melody = melody;
+        this.notes = melody.toArray();
+        this.key = melody.key();
+        int bars = (notes.length + Melody.NOTES_PER_BAR - 1) / Melody.NOTES_PER_BAR;
+        this.barStates = new int[bars + 1];
+
+        sequence = new Sequence(Sequence.PPQ, Arrangement.RESOLUTION);
+        Track[] tracks = new Track[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            tracks[layer] = sequence.createTrack();
+            tracks[layer].add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE,
+                    Arrangement.CHANNEL[layer], program, 0), 0));
+            slots[layer] = new ShortMessage[notes.length * Arrangement.voiceCount(layer) * 2];
+        }
+
+        // Slots go in step order, so ties keep a step's offs ahead of the next step's ons
+        MusicTheory.Harmony harmony = new MusicTheory.Harmony(key);
+        Arrangement.forEachEvent(melody, 0, notes.length, harmony, new Arrangement.Sink<InvalidMidiDataException>() {
+            int step;
+
+            @Override
+            public void step(int index, int note) throws InvalidMidiDataException {
+                step = index;
+                if (index % Melody.NOTES_PER_BAR == 0) barStates[index / Melody.NOTES_PER_BAR] = harmony.state();
+                long tick = (long) index * Arrangement.TICKS_PER_NOTE;
+                for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+                    for (int v = 0; v < Arrangement.voiceCount(layer); v++) {
+                        int slot = slot(layer, index, v);
+                        slots[layer][slot] = new ShortMessage();
+                        slots[layer][slot + 1] = new ShortMessage();
+                        tracks[layer].add(new MidiEvent(slots[layer][slot], tick + Arrangement.onOffset(layer, v)));
+                        tracks[layer].add(new MidiEvent(slots[layer][slot + 1], tick + Arrangement.offOffset(layer, v)));
+                        if (note == Melody.REST) set(layer, index, v, -1);
+                    }
+                }
+            }
+
+            @Override
+            public void voice(int layer, int v, int pitch, long on, long off) throws InvalidMidiDataException {
+                set(layer, step, v, pitch);
+            }
+        });
+        barStates[bars] = harmony.state();
+        Telemetry.SEQUENCE_BUILD.record(System.nanoTime() - start, notes.length);
+    }
+
+    private static int maxOffset() {
+        int max = 0;
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            for (int v = 0; v < Arrangement.voiceCount(layer); v++) {
+                max = Math.max(max, Math.max(Arrangement.onOffset(layer, v), Arrangement.offOffset(layer, v)));
+            }
+        }
+        return max;
+    }
+
+    private static int voicesPerStep() {
+        int voices = 0;
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            voices += Arrangement.voiceCount(layer);
+        }
+        return voices;
+    }
+
+    private static int slot(int layer, int step, int voice) {
+        return (step * Arrangement.voiceCount(layer) + voice) * 2;
+    }
+
+    /** The four-track sequence; its events must not be added to or removed. */
+    Sequence sequence() {
+        return sequence;
+    }
+
+    synchronized int bars() {
+        return barStates.length - 1;
+    }
+
+    /** The melody as it stands after every edit so far. */
+    synchronized Melody melody() {
+        if (melody == null) melody = new Melody(notes.clone(), key);
+        return melody;
+    }
+
+    /**
+     * Replaces bar {@code bar} with the four notes at {@code offset} of
+     * {@code src}, returning the patch that brings the sequence up to date.
+     */
+    synchronized Patch setBar(int bar, int[] src, int offset) {
+        if (bar < 0 || bar >= bars()) throw new IndexOutOfBoundsException("bar " + bar + " of " + bars());
+        int from = bar * Melody.NOTES_PER_BAR;
+        int length = Math.min(Melody.NOTES_PER_BAR, notes.length - from);
+        System.arraycopy(src, offset, notes, from, length);
+        melody = null;
+
+        // Re-voice from this bar until the chord state at a bar line is as before
+        MusicTheory.Harmony harmony = new MusicTheory.Harmony(key);
+        harmony.resume(barStates[bar]);
+        Melody edited = new Melody(notes, key); // a view for the walk, under this lock
+        Plan plan = new Plan();
+        int i = from;
+        int end = bar + 1;
+        while (true) {
+            int barEnd = Math.min(notes.length, end * Melody.NOTES_PER_BAR);
+            Arrangement.forEachEvent(edited, i, barEnd, harmony, plan);
+            i = barEnd;
+            if (harmony.state() == barStates[end] || end - bar == REVOICE_BARS) break;
+            barStates[end] = harmony.state();
+            if (end == bars()) break;
+            end++;
+        }
+        return new Patch(from, i, plan.pitches);
+    }
+
+    // Records the pitch of every voice of each step, or -1 for a rest
+    private static final class Plan implements Arrangement.Sink<RuntimeException> {
+        int[] pitches = new int[Melody.NOTES_PER_BAR * VOICES_PER_STEP];
+        int n;
+
+        @Override
+        public void step(int index, int note) {
+            if (n + VOICES_PER_STEP > pitches.length) pitches = Arrays.copyOf(pitches, pitches.length * 2);
+            if (note == Melody.REST) {
+                Arrays.fill(pitches, n, n + VOICES_PER_STEP, -1);
+                n += VOICES_PER_STEP;
+            }
+        }
+
+        @Override
+        public void voice(int layer, int v, int pitch, long on, long off) {
+            pitches[n++] = pitch;
+        }
+    }
+
+    private void set(int layer, int step, int voice, int pitch) throws InvalidMidiDataException {
+        int slot = slot(layer, step, voice);
+        int channel = Arrangement.CHANNEL[layer];
+        if (pitch < 0) {
+            slots[layer][slot].setMessage(ShortMessage.CONTROL_CHANGE, channel, IDLE_CONTROLLER, 0);
+            slots[layer][slot + 1].setMessage(ShortMessage.CONTROL_CHANGE, channel, IDLE_CONTROLLER, 0);
+        } else {
+            if (pitch > 127) throw new InvalidMidiDataException("pitch out of range: " + pitch);
+            slots[layer][slot].setMessage(ShortMessage.NOTE_ON, channel, pitch, Arrangement.VELOCITY[layer]);
+            slots[layer][slot + 1].setMessage(ShortMessage.NOTE_OFF, channel, pitch, Arrangement.VELOCITY[layer]);
+        }
+    }
+
+    /** New slot contents for a run of steps, waiting to be written. */
+    final class Patch {
+        private final int fromStep;
+        private final int toStep;
+        private final int[] pitches; // per step, layer and voice
+
+        private Patch(int fromStep, int toStep, int[] pitches) {
+            this.fromStep = fromStep;
+            this.toStep = toStep;
+            this.pitches = pitches;
+        }
+
+        /** First tick, in arrangement ticks, of any event the patch rewrites. */
+        long fromTick() {
+            return (long) fromStep * Arrangement.TICKS_PER_NOTE;
+        }
+
+        /** Tick after the last event the patch rewrites. */
+        long toTick() {
+            return (long) (toStep - 1) * Arrangement.TICKS_PER_NOTE + MAX_OFFSET + 1;
+        }
+
+        int steps() {
+            return toStep - fromStep;
+        }
+
+        void apply() throws InvalidMidiDataException {
+            synchronized (LiveSequence.this) {
+                int n = 0;
+                for (int i = fromStep; i < toStep; i++) {
+                    for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+                        for (int v = 0; v < Arrangement.voiceCount(layer); v++) {
+                            set(layer, i, v, pitches[n++]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// LoadTest.java (Closed-loop load generator for MelodyServer)
+package astramelody;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a running {@link MelodyServer} from a fixed number of concurrent
+ * clients, each sending its next request as soon as the last one returns,
+ * and reports throughput and latency percentiles.
+ *
+ * <pre>
+ * java -jar app/target/astramelody.jar loadtest [--url=http://127.0.0.1:8080] [--path=/midi] \
+ *     [--concurrency=16] [--requests=20000] [--warmup=2000] [--seeds=256] [--bars=16] [--key="A Minor"]
+ * </pre>
+ *
+ * Requests cycle through {@code --seeds} distinct seeds, so after the
+ * first round they are served from the cache; {@code --seeds=0} sends no
+ * seed and makes every request generate a fresh melody.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = BatchExporter.parseArgs(args);
+        String url = opts.getOrDefault("url", "http://127.0.0.1:8080");
+        String path = opts.getOrDefault("path", "/midi");
+        int concurrency, requests, warmup, seeds, bars;
+        try {
+            concurrency = BatchExporter.intOption(opts, "concurrency", 16, 1, 32767);
+            requests = BatchExporter.intOption(opts, "requests", 20000, 1, Integer.MAX_VALUE);
+            warmup = BatchExporter.intOption(opts, "warmup", 2000, 0, Integer.MAX_VALUE);
+            seeds = BatchExporter.intOption(opts, "seeds", 256, 0, Integer.MAX_VALUE);
+            bars = BatchExporter.intOption(opts, "bars", 16, 1, Integer.MAX_VALUE / Melody.NOTES_PER_BAR);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        String query = param("key", opts.getOrDefault("key", "A Minor"))
+                + "&" + param("mood", opts.getOrDefault("mood", "Sad"))
+                + "&" + param("bars", Integer.toString(bars));
+
+        LoadTest test = new LoadTest(url + path + "?" + query, seeds, concurrency);
+        test.run(warmup);
+        Result result = test.run(requests);
+        System.out.println(result);
+    }
+
+    private static String param(String name, String value) {
+        return name + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private final String baseUri;
+    private final int seeds;
+    private final int concurrency;
+    private final HttpClient client;
+
+    public LoadTest(String baseUri, int seeds, int concurrency) {
+        this.baseUri = baseUri;
+        this.seeds = seeds;
+        this.concurrency = concurrency;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(2, r -> {
+                    Thread t = new Thread(r, "loadtest-client");
+                    t.setDaemon(true);
+                    return t;
+                }))
+                .build();
+    }
+
+    /** Sends {@code requests} requests over {@code concurrency} connections and waits for them all. */
+    public Result run(int requests) throws InterruptedException {
+        StageStats latency = new StageStats();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int c = 0; c < concurrency; c++) {
+            clients.execute(() -> {
+                for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                    String uri = seeds > 0 ? baseUri + "&seed=" + (i % seeds) : baseUri;
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).GET().build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        latency.record(System.nanoTime() - sent, 1);
+                        if (response.statusCode() != 200) errors.incrementAndGet();
+                        bytes.addAndGet(response.body().length);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(latency, errors.get(), bytes.get(), seconds);
+    }
+
+    public static final class Result {
+        public final StageStats latency;
+        public final int errors;
+        public final long bytes;
+        public final double seconds;
+
+        Result(StageStats latency, int errors, long bytes, double seconds) {
+            this.latency = latency;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d errors) in %.2f s: %.0f req/s, %.1f MB/s%n"
+                            + "latency ms: p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f",
+                    latency.getCount(), errors, seconds, latency.getCount() / seconds, bytes / 1e6 / seconds,
+                    latency.quantileNanos(0.50) / 1e6, latency.quantileNanos(0.90) / 1e6,
+                    latency.quantileNanos(0.99) / 1e6, latency.quantileNanos(0.999) / 1e6,
+                    latency.getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+// MarkovModel.java (Trained scale-degree transition tables)
+package astramelody;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Second-order Markov model over the eight notes of a scale, with one
+ * table per mood and key. Each row of a table is stored as an alias table,
+ * so drawing the next note costs one random number and two array reads
+ * whatever the distribution.
+ *
+ * <p>Rows are: the opening note, then one row per previous note, then one
+ * per pair of previous notes. Rows the corpus never reached fall back to
+ * the shorter context when the table is built.
+ */
+public final class MarkovModel {
+
+    /** Model states: indices into an eight-note scale, octave included. */
+    static final int STATES = 8;
+    static final int START_ROW = 0;
+    static final int ROWS = 1 + STATES + STATES * STATES;
+
+    /** Mood or key name matching any value. */
+    public static final String ANY = "*";
+
+    private static final int MAGIC = 0x414d4b56; // "AMKV"
+    private static final int VERSION = 1;
+    private static final int PROBABILITY_BITS = 30;
+
+    private final Map<String, Table> tables;
+
+    MarkovModel(Map<String, Table> tables) {
+        this.tables = tables;
+    }
+
+    /** The table for {@code mood} and {@code key}, falling back to any key, then any mood. */
+    public Table table(String mood, String key) {
+        Table table = tables.get(name(mood, key));
+        if (table == null) table = tables.get(name(mood, ANY));
+        if (table == null) table = tables.get(name(ANY, key));
+        if (table == null) table = tables.get(name(ANY, ANY));
+        return table;
+    }
+
+    public Set<String> tableNames() {
+        return tables.keySet();
+    }
+
+    static String name(String mood, String key) {
+        return mood + "|" + key;
+    }
+
+    static int row(int previous2, int previous1) {
+        if (previous1 < 0) return START_ROW;
+        if (previous2 < 0) return 1 + previous1;
+        return 1 + STATES + previous2 * STATES + previous1;
+    }
+
+    /** One mood/key table: {@link #ROWS} alias rows of {@link #STATES} columns. */
+    public static final class Table {
+        private final int[] threshold = new int[ROWS * STATES];
+        private final byte[] alias = new byte[ROWS * STATES];
+        private final long observations;
+
+        private Table(long observations) {
+            this.observations = observations;
+        }
+
+        /** Builds the alias rows from transition counts laid out as [row][next]. */
+        static Table fromCounts(long[] counts) {
+            long total = 0;
+            for (long c : counts) total += c;
+            Table table = new Table(total);
+
+            double[][] rows = new double[ROWS][];
+            for (int row = 0; row < ROWS; row++) {
+                long sum = 0;
+                for (int s = 0; s < STATES; s++) sum += counts[row * STATES + s];
+                if (sum > 0) {
+                    rows[row] = new double[STATES];
+                    for (int s = 0; s < STATES; s++) rows[row][s] = counts[row * STATES + s] / (double) sum;
+                }
+            }
+            // Back off unseen contexts to the next shorter one, down to uniform
+            if (rows[START_ROW] == null) {
+                rows[START_ROW] = new double[STATES];
+                Arrays.fill(rows[START_ROW], 1.0 / STATES);
+            }
+            for (int s = 0; s < STATES; s++) {
+                if (rows[1 + s] == null) rows[1 + s] = rows[START_ROW];
+            }
+            for (int s2 = 0; s2 < STATES; s2++) {
+                for (int s1 = 0; s1 < STATES; s1++) {
+                    int row = row(s2, s1);
+                    if (rows[row] == null) rows[row] = rows[1 + s1];
+                }
+            }
+            for (int row = 0; row < ROWS; row++) {
+                table.buildRow(row, rows[row]);
+            }
+            return table;
+        }
+
+        // Vose's alias method with integer thresholds
+        private void buildRow(int row, double[] p) {
+            int base = row * STATES;
+            double[] scaled = new double[STATES];
+            int[] small = new int[STATES];
+            int[] large = new int[STATES];
+            int ns = 0;
+            int nl = 0;
+            for (int i = 0; i < STATES; i++) {
+                scaled[i] = p[i] * STATES;
+                if (scaled[i] < 1.0) small[ns++] = i; else large[nl++] = i;
+            }
+            while (ns > 0 && nl > 0) {
+                int s = small[--ns];
+                int l = large[--nl];
+                threshold[base + s] = (int) Math.round(scaled[s] * (1 << PROBABILITY_BITS));
+                alias[base + s] = (byte) l;
+                scaled[l] = scaled[l] + scaled[s] - 1.0;
+                if (scaled[l] < 1.0) small[ns++] = l; else large[nl++] = l;
+            }
+            while (nl > 0) {
+                int l = large[--nl];
+                threshold[base + l] = 1 << PROBABILITY_BITS;
+                alias[base + l] = (byte) l;
+            }
+            while (ns > 0) { // rounding leftovers
+                int s = small[--ns];
+                threshold[base + s] = 1 << PROBABILITY_BITS;
+                alias[base + s] = (byte) s;
+            }
+        }
+
+        /** Draws the next state after {@code previous2, previous1} (-1 for none). */
+        int sample(int previous2, int previous1, SeededRandom random) {
+            long bits = random.nextLong();
+            int column = (int) (bits >>> 61); // top 3 bits pick the column
+            int u = (int) (bits & ((1 << PROBABILITY_BITS) - 1));
+            int i = row(previous2, previous1) * STATES + column;
+            return u < threshold[i] ? column : alias[i];
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tables.size());
+            for (Map.Entry<String, Table> entry : tables.entrySet()) {
+                Table table = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(table.observations);
+                for (int i = 0; i < ROWS * STATES; i++) {
+                    out.writeInt(table.threshold[i]);
+                    out.writeByte(table.alias[i]);
+                }
+            }
+        }
+    }
+
+    public static MarkovModel load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a melody model: " + file);
+            }
+            int count = in.readInt();
+            Map<String, Table> tables = new HashMap<>();
+            for (int t = 0; t < count; t++) {
+                String name = in.readUTF();
+                Table table = new Table(in.readLong());
+                for (int i = 0; i < ROWS * STATES; i++) {
+                    table.threshold[i] = in.readInt();
+                    table.alias[i] = in.readByte();
+                }
+                tables.put(name, table);
+            }
+            return new MarkovModel(tables);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+// MarkovTrainer.java (Builds a MarkovModel from a directory of MIDI files)
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Trains a {@link MarkovModel} from a corpus of Standard MIDI Files.
+ *
+ * <pre>
+ * java -jar app/target/astramelody.jar train --corpus=midi --out=model.bin [--threads=8]
+ * </pre>
+ *
+ * The first directory level under the corpus names the mood ({@code
+ * midi/Happy/...}); files directly in the corpus count for every mood. Each
+ * file's top line is matched to the built-in key it fits best and counted
+ * as scale-degree transitions. Files are memory-mapped and parsed in
+ * parallel by {@link SmfReader}, and every worker counts into its own
+ * tables, merged at the end.
+ */
+public class MarkovTrainer {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> opts = BatchExporter.parseArgs(args);
+        Path corpus = Path.of(opts.getOrDefault("corpus", "midi"));
+        File out = new File(opts.getOrDefault("out", "model.bin"));
+        int threads;
+        try {
+            threads = BatchExporter.intOption(opts, "threads", Runtime.getRuntime().availableProcessors(), 1, 32767);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Counts counts = count(corpus, threads);
+        MarkovModel model = counts.toModel();
+        model.save(out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Read %d files (%d failed), %d notes, %.1f MB in %.2f s: %.0f files/s%n",
+                counts.files, counts.failed, counts.notes, counts.bytes / 1e6, seconds, counts.files / seconds);
+        System.out.println("Wrote " + model.tableNames().size() + " tables to " + out);
+    }
+
+    public static MarkovModel train(Path corpus, int threads) throws IOException {
+        return count(corpus, threads).toModel();
+    }
+
+    private static Counts count(Path corpus, int threads) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(corpus)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(p -> {
+                        String name = p.getFileName().toString().toLowerCase();
+                        return name.endsWith(".mid") || name.endsWith(".midi");
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> files.parallelStream().collect(
+                    () -> new Counts(corpus), Counts::add, Counts::merge)).get();
+        } catch (Exception e) {
+            throw new IOException("training failed", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Per-worker transition counts, keyed by table name. */
+    private static final class Counts {
+        private static final List<MusicTheory.Key> KEYS = MusicTheory.keys();
+        // Scale degree (0-6) of each pitch class relative to the key's tonic, or -1
+        private static final int[][] DEGREE = new int[KEYS.size()][12];
+        private static final int[] TONIC = new int[KEYS.size()];
+        static {
+            for (MusicTheory.Key key : KEYS) {
+                int k = key.index();
+                TONIC[k] = key.root().pitchClass();
+                for (int pc = 0; pc < 12; pc++) {
+                    DEGREE[k][pc] = key.degreeOf(TONIC[k] + pc);
+                }
+            }
+        }
+
+        private final Path corpus;
+        private final SmfReader reader = new SmfReader();
+        private final Map<String, long[]> tables = new HashMap<>();
+        private final int[] histogram = new int[12];
+        long files;
+        long failed;
+        long notes;
+        long bytes;
+
+        Counts(Path corpus) {
+            this.corpus = corpus;
+        }
+
+        void add(Path file) {
+            int[] line;
+            try {
+                line = reader.readTopLine(file);
+                bytes += Files.size(file);
+            } catch (IOException e) {
+                failed++;
+                return;
+            }
+            files++;
+            if (line.length == 0) return;
+            notes += line.length;
+
+            Path relative = corpus.relativize(file);
+            String mood = relative.getNameCount() > 1 ? relative.getName(0).toString() : MarkovModel.ANY;
+            int key = detectKey(line);
+            long[] counts = tables.computeIfAbsent(MarkovModel.name(mood, KEYS.get(key).toString()),
+                    name -> new long[MarkovModel.ROWS * MarkovModel.STATES]);
+
+            int[] degree = DEGREE[key];
+            int tonic = TONIC[key];
+            int previous2 = -1;
+            int previous1 = -1;
+            int previousPitch = -1;
+            for (int pitch : line) {
+                int d = degree[Math.floorMod(pitch - tonic, 12)];
+                if (d < 0) continue; // outside the scale
+                // The upper tonic is the octave state when the line climbs into it
+                int state = (d == 0 && previous1 >= 4 && pitch > previousPitch) ? 7 : d;
+                counts[MarkovModel.row(previous2, previous1) * MarkovModel.STATES + state]++;
+                previous2 = previous1;
+                previous1 = state;
+                previousPitch = pitch;
+            }
+        }
+
+        // Best-fitting key: most notes in the scale, ties broken towards the tonic
+        private int detectKey(int[] line) {
+            Arrays.fill(histogram, 0);
+            for (int pitch : line) histogram[pitch % 12]++;
+            int best = 0;
+            long bestScore = -1;
+            for (int k = 0; k < KEYS.size(); k++) {
+                long score = histogram[TONIC[k]];
+                for (int pc = 0; pc < 12; pc++) {
+                    if (DEGREE[k][Math.floorMod(pc - TONIC[k], 12)] >= 0) score += 2L * histogram[pc];
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = k;
+                }
+            }
+            return best;
+        }
+
+        void merge(Counts other) {
+            other.tables.forEach((name, counts) -> {
+                long[] mine = tables.computeIfAbsent(name, n -> new long[counts.length]);
+                for (int i = 0; i < counts.length; i++) mine[i] += counts[i];
+            });
+            files += other.files;
+            failed += other.failed;
+            notes += other.notes;
+            bytes += other.bytes;
+        }
+
+        // Adds the any-key and any-mood aggregates and builds the alias tables
+        MarkovModel toModel() {
+            Map<String, long[]> all = new HashMap<>();
+            for (Map.Entry<String, long[]> entry : tables.entrySet()) {
+                String[] parts = entry.getKey().split("\\|", 2);
+                Set<String> names = new HashSet<>(Arrays.asList(entry.getKey(),
+                        MarkovModel.name(parts[0], MarkovModel.ANY),
+                        MarkovModel.name(MarkovModel.ANY, parts[1]),
+                        MarkovModel.name(MarkovModel.ANY, MarkovModel.ANY)));
+                for (String name : names) {
+                    long[] sum = all.computeIfAbsent(name, n -> new long[entry.getValue().length]);
+                    for (int i = 0; i < sum.length; i++) sum[i] += entry.getValue()[i];
+                }
+            }
+            Map<String, MarkovModel.Table> built = new HashMap<>();
+            all.forEach((name, counts) -> built.put(name, MarkovModel.Table.fromCounts(counts)));
+            return new MarkovModel(built);
+        }
+    }
+}
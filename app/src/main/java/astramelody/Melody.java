@@ -0,0 +1,127 @@
+// Melody.java (Primitive melody representation)
+package astramelody;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable melody stored as a flat {@code int[]} of MIDI pitches, one per
+ * quarter-note step, with {@link #REST} marking silent steps. Generated
+ * melodies carry their key, which the arrangement harmonises in; others
+ * have none and get plain major triads.
+ */
+public final class Melody {
+
+    public static final int REST = -1;
+    public static final int NOTES_PER_BAR = 4;
+
+    private final int[] notes;
+    private final MusicTheory.Key key;
+    private int hash;
+
+    // Takes ownership of the array; callers must not modify it afterwards
+    Melody(int[] notes) {
+        this(notes, null);
+    }
+
+    Melody(int[] notes, MusicTheory.Key key) {
+        this.notes = notes;
+        this.key = key;
+    }
+
+    public static Melody of(List<Integer> notes) {
+        int[] copy = new int[notes.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = notes.get(i);
+        }
+        return new Melody(copy);
+    }
+
+    public static Melody copyOf(int[] notes, int offset, int length) {
+        return new Melody(Arrays.copyOfRange(notes, offset, offset + length));
+    }
+
+    /**
+     * A copy in the same key with bar {@code bar} replaced by the notes at
+     * {@code offset} of {@code src}; a short last bar takes only as many.
+     */
+    public Melody withBar(int bar, int[] src, int offset) {
+        int from = bar * NOTES_PER_BAR;
+        if (bar < 0 || from >= notes.length) throw new IndexOutOfBoundsException("bar " + bar);
+        int[] copy = notes.clone();
+        System.arraycopy(src, offset, copy, from, Math.min(NOTES_PER_BAR, notes.length - from));
+        return new Melody(copy, key);
+    }
+
+    /** The key the melody was written in, or {@code null} if unknown. */
+    public MusicTheory.Key key() {
+        return key;
+    }
+
+    public int length() {
+        return notes.length;
+    }
+
+    public int bars() {
+        return notes.length / NOTES_PER_BAR;
+    }
+
+    public int note(int index) {
+        return notes[index];
+    }
+
+    public boolean isRest(int index) {
+        return notes[index] == REST;
+    }
+
+    public void copyTo(int[] dest, int offset) {
+        System.arraycopy(notes, 0, dest, offset, notes.length);
+    }
+
+    public int[] toArray() {
+        return notes.clone();
+    }
+
+    /**
+     * Read-only {@code List<Integer>} view for code written against the
+     * boxed API. Elements are boxed on access.
+     */
+    public List<Integer> toList() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return notes[index];
+            }
+
+            @Override
+            public int size() {
+                return notes.length;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Arrays.hashCode(notes) + (key == null ? 0 : key.index() + 1);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Melody)) return false;
+        Melody other = (Melody) o;
+        return key == other.key && (notes == other.notes
+                || (hashCode() == other.hashCode() && Arrays.equals(notes, other.notes)));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(notes);
+    }
+}
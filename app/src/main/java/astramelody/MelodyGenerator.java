@@ -0,0 +1,248 @@
+// === MelodyGenerator.java ===
+package astramelody;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Motif-based melody generator. Every melody is a pure function of its
+ * seed: the motifs come from one derived stream and each bar from its own,
+ * so bars can be generated in any order or on any thread with identical
+ * results. Instances hold no mutable state and may be shared.
+ *
+ * <p>Without a model, motif notes are drawn uniformly from the scale. With
+ * a {@link MarkovModel} they follow the trained table for the mood and key.
+ */
+public class MelodyGenerator {
+
+    private static final MusicTheory.Key DEFAULT_KEY = MusicTheory.Key.of(MusicTheory.Root.C, MusicTheory.Mode.MAJOR);
+
+    private static final int MOTIF_LENGTH = Melody.NOTES_PER_BAR;
+    private static final long MOTIF_STREAM = -1;
+    private static final int PROGRESS_CHUNK_BARS = 4096; // power of two
+
+    private final MarkovModel model;
+
+    public MelodyGenerator() {
+        this(null);
+    }
+
+    public MelodyGenerator(MarkovModel model) {
+        this.model = model;
+    }
+
+    /** The key named {@code name}, or C Major if there is no such key. */
+    static MusicTheory.Key keyFor(String name) {
+        MusicTheory.Key key = MusicTheory.Key.parse(name);
+        return key == null ? DEFAULT_KEY : key;
+    }
+
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    public List<Integer> generateMelody(String key, String mood, int bars) {
+        return new ArrayList<>(generate(key, mood, bars).toList());
+    }
+
+    public Melody generate(String key, String mood, int bars) {
+        return generate(key, mood, bars, newSeed());
+    }
+
+    public Melody generate(String key, String mood, int bars, long seed) {
+        return generate(keyFor(key), mood, bars, seed);
+    }
+
+    public Melody generate(MusicTheory.Key key, String mood, int bars, long seed) {
+        Telemetry.GenerateEvent event = new Telemetry.GenerateEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] notes = new int[bars * Melody.NOTES_PER_BAR];
+        generateBars(key, mood, seed, 0, bars, notes, 0);
+        recordGenerate(event, start, bars);
+        return new Melody(notes, key);
+    }
+
+    /**
+     * Generates in chunks so a background task can follow progress and be
+     * cancelled part way through. Same notes as the other overloads.
+     */
+    public Melody generate(String key, String mood, int bars, long seed, TaskPipeline.Progress progress) {
+        return generate(keyFor(key), mood, bars, seed, progress);
+    }
+
+    public Melody generate(MusicTheory.Key key, String mood, int bars, long seed, TaskPipeline.Progress progress) {
+        Telemetry.GenerateEvent event = new Telemetry.GenerateEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] notes = new int[bars * Melody.NOTES_PER_BAR];
+        BarStream stream = stream(key, mood, seed, 0);
+        for (int bar = 0; bar < bars; bar++) {
+            if ((bar & (PROGRESS_CHUNK_BARS - 1)) == 0) {
+                progress.checkCancelled();
+                progress.report((int) (bar * 100L / bars));
+            }
+            stream.next(notes, bar * Melody.NOTES_PER_BAR);
+        }
+        progress.report(100);
+        recordGenerate(event, start, bars);
+        return new Melody(notes, key);
+    }
+
+    /**
+     * Generates a long melody in chunks of {@code chunkBars} on the common
+     * ForkJoinPool. The result is identical to {@link #generate(String, String, int, long)}.
+     */
+    public Melody generateParallel(String key, String mood, int bars, long seed, int chunkBars) {
+        Telemetry.GenerateEvent event = new Telemetry.GenerateEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] notes = new int[bars * Melody.NOTES_PER_BAR];
+        MusicTheory.Key resolved = keyFor(key);
+        int chunks = (bars + chunkBars - 1) / chunkBars;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * chunkBars;
+            int to = Math.min(bars, from + chunkBars);
+            generateBars(resolved, mood, seed, from, to, notes, from * Melody.NOTES_PER_BAR);
+        });
+        recordGenerate(event, start, bars);
+        return new Melody(notes, resolved);
+    }
+
+    private static void recordGenerate(Telemetry.GenerateEvent event, long start, int bars) {
+        Telemetry.GENERATE.record(System.nanoTime() - start, bars * (long) Melody.NOTES_PER_BAR);
+        if (event.shouldCommit()) {
+            event.bars = bars;
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes {@code bars * 4} notes into {@code out} starting at
+     * {@code offset}, without allocating per bar.
+     */
+    public void generateInto(String key, String mood, int bars, long seed, int[] out, int offset) {
+        generateBars(keyFor(key), mood, seed, 0, bars, out, offset);
+    }
+
+    /**
+     * Writes bars {@code [fromBar, toBar)} of the melody for {@code seed}
+     * into {@code out}, the first of them at {@code offset}.
+     */
+    public void generateBars(String key, String mood, long seed, int fromBar, int toBar, int[] out, int offset) {
+        generateBars(keyFor(key), mood, seed, fromBar, toBar, out, offset);
+    }
+
+    public void generateBars(MusicTheory.Key key, String mood, long seed, int fromBar, int toBar, int[] out, int offset) {
+        BarStream bars = stream(key, mood, seed, fromBar);
+        for (int i = fromBar; i < toBar; i++) {
+            bars.next(out, offset + (i - fromBar) * Melody.NOTES_PER_BAR);
+        }
+    }
+
+    /**
+     * Writes one take of bar {@code bar} of the melody for {@code seed};
+     * variant 0 is the bar as generated, see {@link BarStream#next(long, int[], int)}.
+     */
+    public void generateBar(MusicTheory.Key key, String mood, long seed, int bar, long variant, int[] out, int offset) {
+        stream(key, mood, seed, bar).next(variant, out, offset);
+    }
+
+    /**
+     * Incremental source of the bars of one melody, starting at
+     * {@code firstBar}. Bar {@code i} is the same as bar {@code i} of
+     * {@link #generate(String, String, int, long)} with the same seed, so
+     * a stream can run forever and still join seamlessly with any chunk.
+     */
+    public BarStream stream(String key, String mood, long seed, int firstBar) {
+        return stream(keyFor(key), mood, seed, firstBar);
+    }
+
+    public BarStream stream(MusicTheory.Key key, String mood, long seed, int firstBar) {
+        MarkovModel.Table table = model == null ? null : model.table(mood, key.toString());
+        return new BarStream(key, table, seed, firstBar);
+    }
+
+    public static final class BarStream {
+        private final MusicTheory.Key key;
+        private final long seed;
+        private final int[] motifs = new int[MOTIF_LENGTH * 2]; // two motifs back to back
+        private final SeededRandom random = new SeededRandom();
+        private int nextBar;
+
+        private BarStream(MusicTheory.Key key, MarkovModel.Table table, long seed, int firstBar) {
+            int[] scale = key.scale();
+            this.key = key;
+            this.seed = seed;
+            this.nextBar = firstBar;
+            random.reset(SeededRandom.derive(seed, MOTIF_STREAM));
+            if (table == null) {
+                generateMotif(scale, random, motifs, 0);
+                generateMotif(scale, random, motifs, MOTIF_LENGTH);
+            } else {
+                generateMotifs(scale, table, random, motifs);
+            }
+        }
+
+        public MusicTheory.Key key() {
+            return key;
+        }
+
+        public int nextBarIndex() {
+            return nextBar;
+        }
+
+        /** Writes the next bar's four notes at {@code offset}, without allocating. */
+        public void next(int[] out, int offset) {
+            next(0, out, offset);
+        }
+
+        /**
+         * Writes another take of the next bar, on the same motif: variant 0
+         * is the bar {@link #next(int[], int)} writes, and each other
+         * variant is a different, equally repeatable, variation of it.
+         */
+        public void next(long variant, int[] out, int offset) {
+            int bar = nextBar++;
+            long barSeed = SeededRandom.derive(seed, bar);
+            random.reset(variant == 0 ? barSeed : SeededRandom.derive(barSeed, variant));
+            int motifOffset = (bar % 2 == 0) ? 0 : MOTIF_LENGTH;
+            applyVariation(random, motifs, motifOffset, out, offset);
+            applyGroove(random, out, offset);
+        }
+    }
+
+    private static void generateMotif(int[] scale, SeededRandom random, int[] out, int offset) {
+        for (int i = 0; i < MOTIF_LENGTH; i++) {
+            out[offset + i] = scale[random.nextInt(scale.length)];
+        }
+    }
+
+    // Both motifs as one phrase walked through the trained transitions
+    private static void generateMotifs(int[] scale, MarkovModel.Table table, SeededRandom random, int[] out) {
+        int previous2 = -1;
+        int previous1 = -1;
+        for (int i = 0; i < MOTIF_LENGTH * 2; i++) {
+            int state = table.sample(previous2, previous1, random);
+            out[i] = scale[state];
+            previous2 = previous1;
+            previous1 = state;
+        }
+    }
+
+    private static void applyVariation(SeededRandom random, int[] motif, int motifOffset, int[] out, int offset) {
+        for (int i = 0; i < MOTIF_LENGTH; i++) {
+            int change = random.nextBoolean() ? 0 : (random.nextBoolean() ? 12 : -12);
+            out[offset + i] = motif[motifOffset + i] + change;
+        }
+    }
+
+    private static void applyGroove(SeededRandom random, int[] notes, int offset) {
+        for (int i = 0; i < MOTIF_LENGTH; i++) {
+            if (i % 4 != 0 && i % 4 != 2) {
+                if (!random.nextBoolean()) notes[offset + i] = Melody.REST;
+            }
+        }
+    }
+}
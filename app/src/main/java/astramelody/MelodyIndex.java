@@ -0,0 +1,209 @@
+// MelodyIndex.java (Transposition-invariant near-duplicate index)
+package astramelody;
+
+import java.util.Arrays;
+
+/**
+ * Finds melodies that are near-duplicates of ones already seen, whatever
+ * key they are in. A melody is reduced to the set of its interval n-grams
+ * (steps between successive notes, with rests as their own symbol), and
+ * two melodies are as similar as the Jaccard overlap of those sets.
+ *
+ * <p>Each melody is summarised by a MinHash signature of {@link #HASHES}
+ * 16-bit values, and signatures are bucketed by locality-sensitive hashing
+ * in {@link #BANDS} bands, so a lookup only compares against melodies that
+ * agree on a whole band. Pairs at the threshold similarity almost always
+ * share a band, and the candidates found are confirmed on the full
+ * signature. A lookup costs a few microseconds however many melodies are
+ * indexed; storage is about 160 bytes per melody, all in primitive arrays.
+ *
+ * <p>All methods are thread-safe.
+ */
+public final class MelodyIndex {
+
+    /** Intervals per n-gram. */
+    static final int GRAM = 4;
+    static final int HASHES = 32;
+    static final int BANDS = 8;
+    private static final int ROWS = HASHES / BANDS; // 4 x 16 bits: one long per band
+
+    private static final int REST_SYMBOL = 0x80;
+    // The HASHES hash functions are a * mix64(gram) + b with odd a, so each
+    // n-gram is mixed once and then costs one multiply-add per function
+    private static final long[] MULTIPLIERS = new long[HASHES];
+    private static final long[] INCREMENTS = new long[HASHES];
+    static {
+        for (int i = 0; i < HASHES; i++) {
+            MULTIPLIERS[i] = SeededRandom.derive(0x4d696e48L, 2 * i) | 1;
+            INCREMENTS[i] = SeededRandom.derive(0x4d696e48L, 2 * i + 1);
+        }
+    }
+
+    private final int minMatches;
+
+    private short[] signatures = new short[1024 * HASHES];
+    private int[][] next = new int[BANDS][1024]; // bucket chains, -1 terminated
+    private int[][] heads = new int[BANDS][];
+    private int size;
+
+    // Scratch for the caller holding the lock
+    private final long[] minimums = new long[HASHES];
+    private final short[] signature = new short[HASHES];
+
+    /**
+     * @param threshold estimated Jaccard similarity, from 0 to 1, at or
+     *                  above which two melodies count as duplicates
+     */
+    public MelodyIndex(double threshold) {
+        if (threshold <= 0 || threshold > 1) throw new IllegalArgumentException("threshold: " + threshold);
+        this.minMatches = (int) Math.ceil(threshold * HASHES);
+        for (int band = 0; band < BANDS; band++) {
+            heads[band] = new int[2048];
+            Arrays.fill(heads[band], -1);
+        }
+    }
+
+    /** Whether a melody at least as similar as the threshold is indexed. */
+    public synchronized boolean containsSimilar(Melody melody) {
+        sign(melody, minimums, signature);
+        return findSimilar(signature) >= 0;
+    }
+
+    /**
+     * Indexes {@code melody} unless a similar one is already there; the
+     * check and the insert are one atomic step.
+     *
+     * @return {@code true} if the melody was new and has been added
+     */
+    public synchronized boolean addIfNovel(Melody melody) {
+        sign(melody, minimums, signature);
+        if (findSimilar(signature) >= 0) return false;
+        insert(signature);
+        return true;
+    }
+
+    /** Indexes {@code melody} without checking for duplicates. */
+    public synchronized void add(Melody melody) {
+        sign(melody, minimums, signature);
+        insert(signature);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Estimated Jaccard similarity of the interval n-grams of two melodies. */
+    public static double similarity(Melody a, Melody b) {
+        short[] sa = new short[HASHES];
+        short[] sb = new short[HASHES];
+        long[] minimums = new long[HASHES];
+        sign(a, minimums, sa);
+        sign(b, minimums, sb);
+        int matches = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (sa[i] == sb[i]) matches++;
+        }
+        return matches / (double) HASHES;
+    }
+
+    // MinHash over the interval n-grams. Each n-gram packs into an int
+    // exactly: one signed byte per interval, or the rest symbol
+    static void sign(Melody melody, long[] min, short[] out) {
+        Arrays.fill(min, Long.MAX_VALUE);
+
+        int gram = 0;
+        int grams = 0;
+        int symbols = 0;
+        int previous = Melody.REST;
+        for (int i = 0; i < melody.length(); i++) {
+            int note = melody.note(i);
+            int symbol;
+            if (note == Melody.REST) {
+                symbol = REST_SYMBOL;
+            } else if (previous == Melody.REST) {
+                previous = note; // the first note has no interval
+                continue;
+            } else {
+                symbol = (note - previous) & 0xff;
+                previous = note;
+            }
+            gram = (gram << 8) | symbol;
+            if (++symbols >= GRAM) {
+                addGram(gram, min);
+                grams++;
+            }
+        }
+        // Too short for a whole n-gram: the partial one stands for the melody
+        if (grams == 0) addGram(gram | (symbols << 28), min);
+
+        for (int i = 0; i < HASHES; i++) out[i] = (short) (min[i] >>> 48);
+    }
+
+    private static void addGram(int gram, long[] min) {
+        long x = SeededRandom.mix64(gram);
+        for (int i = 0; i < HASHES; i++) {
+            min[i] = Math.min(min[i], x * MULTIPLIERS[i] + INCREMENTS[i]);
+        }
+    }
+
+    private static long bandKey(short[] signature, int offset, int band) {
+        long key = 0;
+        for (int r = 0; r < ROWS; r++) {
+            key = (key << 16) | (signature[offset + band * ROWS + r] & 0xffff);
+        }
+        return key;
+    }
+
+    private static int bucket(long key, int mask) {
+        return (int) SeededRandom.mix64(key) & mask;
+    }
+
+    // Index of an indexed melody similar to the signature, or -1
+    private int findSimilar(short[] signature) {
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, 0, band);
+            int[] chain = next[band];
+            for (int e = heads[band][bucket(key, heads[band].length - 1)]; e >= 0; e = chain[e]) {
+                // Bucket collisions are weeded out by the full comparison
+                if (matches(signature, e) >= minMatches) return e;
+            }
+        }
+        return -1;
+    }
+
+    private int matches(short[] signature, int entry) {
+        int base = entry * HASHES;
+        int matches = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (signatures[base + i] == signature[i]) matches++;
+        }
+        return matches;
+    }
+
+    private void insert(short[] signature) {
+        if (size == next[0].length) grow();
+        System.arraycopy(signature, 0, signatures, size * HASHES, HASHES);
+        link(size);
+        size++;
+    }
+
+    private void link(int entry) {
+        for (int band = 0; band < BANDS; band++) {
+            int b = bucket(bandKey(signatures, entry * HASHES, band), heads[band].length - 1);
+            next[band][entry] = heads[band][b];
+            heads[band][b] = entry;
+        }
+    }
+
+    // Doubles the entry arrays and rehashes so buckets stay at two per entry
+    private void grow() {
+        int capacity = next[0].length * 2;
+        signatures = Arrays.copyOf(signatures, capacity * HASHES);
+        for (int band = 0; band < BANDS; band++) {
+            next[band] = new int[capacity];
+            heads[band] = new int[capacity * 2];
+            Arrays.fill(heads[band], -1);
+        }
+        for (int e = 0; e < size; e++) link(e);
+    }
+}
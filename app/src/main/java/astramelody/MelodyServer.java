@@ -0,0 +1,355 @@
+// MelodyServer.java (Headless HTTP generation service)
+package astramelody;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves generated melodies over HTTP on the loopback interface.
+ *
+ * <pre>
+ * java -jar app/target/astramelody.jar serve [--port=8080] [--threads=64] [--cache=1024] \
+ *     [--cache-mb=64] [--max-bars=65536] [--model=model.bin]
+ *
+ * GET /generate?key=A+Minor&amp;mood=Sad&amp;bars=16&amp;seed=42   melody as JSON
+ * GET /midi?key=A+Minor&amp;mood=Sad&amp;bars=16&amp;seed=42&amp;instrument=Piano&amp;tempo=100
+ * </pre>
+ *
+ * Requests run on a pool of worker threads. Melodies for requests that
+ * name a seed are kept in an LRU cache keyed by (seed, key, mood,
+ * instrument, tempo, bars), along with the encoded MIDI file for all but
+ * very long pieces, so a repeated request is one write of cached bytes.
+ * The cache holds at most {@code --cache} entries and {@code --cache-mb}
+ * of notes and MIDI bytes, so a few long pieces cannot fill the heap.
+ * Long pieces are streamed from {@link SmfWriter} straight into the
+ * response without being held in memory. Every request is timed into the
+ * {@code http} stage of {@link Telemetry}.
+ */
+public class MelodyServer {
+
+    // Longer pieces are streamed on every request rather than cached as bytes
+    private static final int CACHED_MIDI_NOTES = 16 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> opts = BatchExporter.parseArgs(args);
+        int port, threads, cache, maxBars;
+        long cacheBytes;
+        try {
+            port = BatchExporter.intOption(opts, "port", 8080, 0, 65535);
+            threads = BatchExporter.intOption(opts, "threads", 64, 1, 32767);
+            cache = BatchExporter.intOption(opts, "cache", 1024, 0, 1 << 24);
+            cacheBytes = (long) BatchExporter.intOption(opts, "cache-mb", 64, 0, 1 << 20) << 20;
+            maxBars = BatchExporter.intOption(opts, "max-bars", 65536, 1, Integer.MAX_VALUE / Melody.NOTES_PER_BAR);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        MarkovModel model = opts.containsKey("model") ? MarkovModel.load(new File(opts.get("model"))) : null;
+
+        MelodyServer server = new MelodyServer(new MelodyGenerator(model), cache, cacheBytes, maxBars);
+        server.start(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Serving on http://127.0.0.1:" + server.getPort() + " with " + threads + " threads");
+    }
+
+    private final MelodyGenerator generator;
+    private final int maxBars;
+    private final Map<Request, Entry> cache;
+    private final int cacheCapacity;
+    private final long cacheBytes;
+    private long cachedBytes; // weight of everything in the cache
+    private long hits;
+    private long misses;
+
+    private HttpServer http;
+    private ExecutorService workers;
+
+    /**
+     * @param cacheCapacity most melodies kept
+     * @param cacheBytes most bytes of notes and encoded MIDI kept
+     */
+    public MelodyServer(MelodyGenerator generator, int cacheCapacity, long cacheBytes, int maxBars) {
+        this.generator = generator;
+        this.maxBars = maxBars;
+        this.cacheCapacity = cacheCapacity;
+        this.cacheBytes = cacheBytes;
+        this.cache = new LinkedHashMap<>(cacheCapacity * 2, 0.75f, true);
+    }
+
+    /** Starts listening on {@code port} of the loopback interface; 0 picks a free port. */
+    public synchronized void start(int port, int threads) throws IOException {
+        // Headers and body go out as separate writes; without TCP_NODELAY
+        // Nagle's algorithm holds the body until the client's delayed ACK,
+        // adding about 40 ms to every keep-alive response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> new Thread(r, "http-worker-" + count.incrementAndGet()));
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        http.setExecutor(workers);
+        http.createContext("/generate", exchange -> handle(exchange, false));
+        http.createContext("/midi", exchange -> handle(exchange, true));
+        http.start();
+    }
+
+    public synchronized int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public synchronized void stop() {
+        if (http == null) return;
+        http.stop(0);
+        workers.shutdownNow();
+        http = null;
+    }
+
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    private void handle(HttpExchange exchange, boolean midi) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                bytes = sendText(exchange, 405, "GET only");
+                return;
+            }
+            Request request;
+            try {
+                request = parse(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                bytes = sendText(exchange, 400, e.getMessage());
+                return;
+            }
+
+            Entry entry = lookup(request);
+            exchange.getResponseHeaders().set("X-Seed", Long.toString(request.seed));
+            if (!midi) {
+                bytes = send(exchange, 200, "application/json", toJson(request, entry.melody));
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Disposition",
+                    "attachment; filename=\"melody-" + Long.toHexString(request.seed) + ".mid\"");
+            byte[] file = entry.midi;
+            if (file == null && entry.melody.length() <= CACHED_MIDI_NOTES) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 + entry.melody.length() * 48);
+                SmfWriter.write(entry.melody, request.program, request.tempo, out);
+                file = out.toByteArray();
+                cacheMidi(request, entry, file);
+            }
+            if (file != null) {
+                bytes = send(exchange, 200, "audio/midi", file);
+            } else {
+                // Chunked: the writer's own buffer is the only copy in memory
+                exchange.getResponseHeaders().set("Content-Type", "audio/midi");
+                exchange.sendResponseHeaders(200, 0);
+                SmfWriter.write(entry.melody, request.program, request.tempo, exchange.getResponseBody());
+            }
+        } finally {
+            Telemetry.HTTP.record(System.nanoTime() - start, bytes);
+        }
+    }
+
+    private Entry lookup(Request request) {
+        if (request.cacheable) {
+            synchronized (cache) {
+                Entry entry = cache.get(request);
+                if (entry != null) {
+                    hits++;
+                    return entry;
+                }
+                misses++;
+            }
+        }
+        // Generated outside the lock; two racing misses just both generate
+        Entry entry = new Entry(generator.generate(request.key, request.mood, request.bars, request.seed));
+        if (request.cacheable) {
+            synchronized (cache) {
+                Entry replaced = cache.put(request, entry);
+                if (replaced != null) cachedBytes -= replaced.weight;
+                cachedBytes += entry.weight;
+                evict();
+            }
+        }
+        return entry;
+    }
+
+    private void cacheMidi(Request request, Entry entry, byte[] file) {
+        synchronized (cache) {
+            if (entry.midi != null || cache.get(request) != entry) return;
+            entry.midi = file;
+            entry.weight += file.length;
+            cachedBytes += file.length;
+            evict();
+        }
+    }
+
+    // Drops the least recently used entries until both limits hold
+    private void evict() {
+        Iterator<Entry> eldest = cache.values().iterator();
+        while (eldest.hasNext() && (cache.size() > cacheCapacity || cachedBytes > cacheBytes)) {
+            cachedBytes -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    private Request parse(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq < 0) continue;
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        MusicTheory.Key key = MusicTheory.Key.parse(params.getOrDefault("key", "C Major"));
+        if (key == null) throw new IllegalArgumentException("unknown key: " + params.get("key"));
+        String mood = params.getOrDefault("mood", "Happy");
+        String instrument = params.getOrDefault("instrument", "Piano");
+        int tempo = intParam(params, "tempo", 120, 20, 400);
+        int bars = intParam(params, "bars", 8, 1, maxBars);
+        boolean seeded = params.containsKey("seed");
+        long seed;
+        try {
+            seed = seeded ? Long.parseLong(params.get("seed")) : MelodyGenerator.newSeed();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad seed: " + params.get("seed"));
+        }
+        return new Request(seed, key, mood, instrument, MidiPlayer.programFor(instrument), tempo, bars, seeded);
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue, int min, int max) {
+        String value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max) return n;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(name + " must be an integer from " + min + " to " + max);
+    }
+
+    private static byte[] toJson(Request request, Melody melody) {
+        StringBuilder json = new StringBuilder(96 + melody.length() * 4);
+        json.append("{\"seed\":").append(request.seed)
+                .append(",\"key\":\"").append(request.key)
+                .append("\",\"mood\":\"").append(escape(request.mood))
+                .append("\",\"bars\":").append(request.bars)
+                .append(",\"notes\":[");
+        for (int i = 0; i < melody.length(); i++) {
+            if (i > 0) json.append(',');
+            json.append(melody.note(i));
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static long sendText(HttpExchange exchange, int status, String text) throws IOException {
+        return send(exchange, status, "text/plain; charset=utf-8", (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long send(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        return body.length;
+    }
+
+    /** Cache key: everything that changes the response. */
+    private static final class Request {
+        final long seed;
+        final MusicTheory.Key key;
+        final String mood;
+        final String instrument;
+        final int program;
+        final int tempo;
+        final int bars;
+        final boolean cacheable;
+        private final int hash;
+
+        Request(long seed, MusicTheory.Key key, String mood, String instrument, int program, int tempo,
+                int bars, boolean cacheable) {
+            this.seed = seed;
+            this.key = key;
+            this.mood = mood;
+            this.instrument = instrument;
+            this.program = program;
+            this.tempo = tempo;
+            this.bars = bars;
+            this.cacheable = cacheable;
+            this.hash = Objects.hash(seed, key.index(), mood, instrument, tempo, bars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Request)) return false;
+            Request other = (Request) o;
+            return seed == other.seed && key == other.key && tempo == other.tempo && bars == other.bars
+                    && mood.equals(other.mood) && instrument.equals(other.instrument);
+        }
+    }
+
+    private static final class Entry {
+        final Melody melody;
+        volatile byte[] midi; // encoded on first /midi request, if short enough
+        long weight; // bytes held, guarded by the cache
+
+        Entry(Melody melody) {
+            this.melody = melody;
+            this.weight = 64 + (long) melody.length() * Integer.BYTES;
+        }
+    }
+}
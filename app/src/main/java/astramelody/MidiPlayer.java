@@ -0,0 +1,291 @@
+// MidiPlayer.java (Layered Playback Engine)
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sound.midi.*;
+
+public class MidiPlayer {
+    private static final Map<String, Integer> INSTRUMENT_MAP = new HashMap<>();
+    static {
+        INSTRUMENT_MAP.put("Piano", 0);
+        INSTRUMENT_MAP.put("Guitar", 24);
+        INSTRUMENT_MAP.put("Synth", 81);
+    }
+
+    private static final long LIVE_NOTE_MILLIS = 400; // short note duration
+    // Pre-rendered live notes: the F1-F12 range, release tail and memory bound
+    private static final int LIVE_LOW_PITCH = 60;
+    private static final int LIVE_HIGH_PITCH = 71;
+    private static final long LIVE_TAIL_MILLIS = 300;
+    private static final long NOTE_CACHE_BYTES = 32L << 20;
+    private static final int PCM_LINE_FRAMES = 4 * PcmMixer.BLOCK_FRAMES;
+    // Precise timing: resolution and the feel applied on it
+    private static final int PRECISE_PPQ = 480;
+    private static final double SWING = 0.58;
+    private static final int HUMANIZE_TICKS = 12;
+    private static final int HUMANIZE_VELOCITY = 8;
+
+    private final NoteBridge noteBridge = new NoteBridge();
+    private Sequencer sequencer;
+    private PlaybackQueue queue;
+    private LivePlayEngine liveEngine;
+    private EndlessPlayer endlessPlayer;
+    private PcmNoteCache noteCache;
+    private volatile PcmMixer pcmMixer; // while low-latency live notes are on
+    private Synthesizer schedulerSynth;
+    private EventScheduler scheduler;
+    private boolean preciseTiming;
+    private boolean looping;
+    private int tempoBPM = 120;
+
+    public MidiPlayer() {
+        try {
+            sequencer = MidiSystem.getSequencer();
+            sequencer.open();
+            sequencer.getTransmitter().setReceiver(noteBridge.tap("sequencer"));
+            queue = new PlaybackQueue(sequencer);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        try {
+            liveEngine = new LivePlayEngine(INSTRUMENT_MAP);
+            liveEngine.open();
+        } catch (Exception e) {
+            liveEngine = null;
+            e.printStackTrace();
+        }
+    }
+
+    public void playMelody(List<Integer> melody, int tempoBPM, String instrumentName) {
+        playMelody(Melody.of(melody), tempoBPM, instrumentName);
+    }
+
+    public void playMelody(Melody melody, int tempoBPM, String instrumentName) {
+        EventScheduler precise = preciseScheduler();
+        if (precise != null) {
+            try {
+                if (queue != null) queue.stop();
+                precise.setTempo(tempoBPM);
+                precise.play(PackedSequence.compile(melody, PRECISE_PPQ, SWING, HUMANIZE_TICKS, HUMANIZE_VELOCITY,
+                        melody.hashCode()), programFor(instrumentName));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (queue == null) return;
+        try {
+            queue.setTempo(tempoBPM);
+            queue.play(melody, programFor(instrumentName));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces bar {@code bar} of {@code melody} with {@code notes}. If the
+     * melody is playing from {@link #playMelody} its sequence is patched in
+     * place and playback carries on; otherwise this is a plain edit.
+     *
+     * @return the edited melody
+     */
+    public Melody replaceBar(Melody melody, int bar, int[] notes) {
+        if (queue != null) {
+            Melody edited = queue.replaceBar(melody, bar, notes, 0);
+            if (edited != null) return edited;
+        }
+        return melody.withBar(bar, notes, 0);
+    }
+
+    /**
+     * Plays melodies through {@link EventScheduler} on its own clock, at a
+     * fine resolution with swing and humanizing, instead of the sequencer.
+     * Queueing still goes through the sequencer.
+     */
+    public synchronized void setPreciseTiming(boolean enabled) {
+        preciseTiming = enabled;
+        if (!enabled && scheduler != null) scheduler.stop();
+    }
+
+    /** The notes played back by the sequencer and the precise scheduler, for the visuals. */
+    NoteBridge noteBridge() {
+        return noteBridge;
+    }
+
+    public String noteVisualsSummary() {
+        return noteBridge.summary();
+    }
+
+    public synchronized String timingSummary() {
+        return scheduler == null ? "precise timing not used" : scheduler.jitterSummary();
+    }
+
+    // The scheduler if precise timing is on, opening it on first use
+    private synchronized EventScheduler preciseScheduler() {
+        if (!preciseTiming) return null;
+        if (scheduler == null) {
+            try {
+                schedulerSynth = MidiSystem.getSynthesizer();
+                schedulerSynth.open();
+                scheduler = new EventScheduler(schedulerSynth.getReceiver(), noteBridge.tap("scheduler"));
+                scheduler.setLooping(looping);
+                scheduler.setTempo(tempoBPM);
+            } catch (MidiUnavailableException e) {
+                e.printStackTrace();
+                preciseTiming = false;
+                return null;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Plays {@code melody} straight after whatever is playing or queued,
+     * with no gap; starts it now if nothing is playing.
+     */
+    public void enqueueMelody(Melody melody, String instrumentName) {
+        if (queue == null) return;
+        synchronized (this) {
+            if (scheduler != null) scheduler.stop();
+        }
+        queue.enqueue(melody, programFor(instrumentName));
+    }
+
+    /** Loops the melody that is playing; queued melodies wait until looping stops. */
+    public void setLooping(boolean looping) {
+        synchronized (this) {
+            this.looping = looping;
+            if (scheduler != null) scheduler.setLooping(looping);
+        }
+        if (queue != null) queue.setLooping(looping);
+    }
+
+    /** Changes the tempo of sequenced playback, including what is playing now. */
+    public void setTempo(int tempoBPM) {
+        synchronized (this) {
+            this.tempoBPM = tempoBPM;
+            if (scheduler != null) scheduler.setTempo(tempoBPM);
+        }
+        if (queue != null) queue.setTempo(tempoBPM);
+    }
+
+    public void exportMelody(List<Integer> melody, int tempoBPM, String instrumentName, File file) {
+        exportMelody(Melody.of(melody), tempoBPM, instrumentName, file);
+    }
+
+    public void exportMelody(Melody melody, int tempoBPM, String instrumentName, File file) {
+        try {
+            exportMelody(melody, tempoBPM, instrumentName, file, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Export for background tasks: reports progress, stops when the task is
+     * cancelled (removing the partial file) and lets failures propagate.
+     */
+    public void exportMelody(Melody melody, int tempoBPM, String instrumentName, File file,
+                             TaskPipeline.Progress progress) throws IOException {
+        // Streams straight from the note array; same bytes as MidiSystem.write
+        SmfWriter.write(melody, programFor(instrumentName), 0, file, progress);
+    }
+
+    /** Writes a live take as a timed single-track MIDI file. */
+    public void exportRecording(LiveRecorder recorder, int tempoBPM, String instrumentName, int quantizeDivision,
+                                File file) throws IOException, InvalidMidiDataException {
+        MidiSystem.write(recorder.toSequence(tempoBPM, programFor(instrumentName), quantizeDivision), 1, file);
+    }
+
+    /** Renders the arrangement to a WAV file offline; see {@link WavRenderer}. */
+    public void exportAudio(Melody melody, int tempoBPM, String instrumentName, File file,
+                            TaskPipeline.Progress progress) throws IOException {
+        WavRenderer.write(melody, programFor(instrumentName), tempoBPM, file, progress);
+    }
+
+    /**
+     * Starts an endless generated melody, replacing any that is playing.
+     */
+    public void startEndless(MelodyGenerator generator, MusicTheory.Key key, String mood, int tempoBPM, String instrumentName) {
+        stopEndless();
+        try {
+            MelodyGenerator.BarStream bars = generator.stream(key, mood, MelodyGenerator.newSeed(), 0);
+            endlessPlayer = new EndlessPlayer(bars, tempoBPM, programFor(instrumentName));
+            endlessPlayer.start();
+        } catch (Exception e) {
+            endlessPlayer = null;
+            e.printStackTrace();
+        }
+    }
+
+    public void stopEndless() {
+        if (endlessPlayer != null) {
+            endlessPlayer.stop();
+            endlessPlayer = null;
+        }
+    }
+
+    static int programFor(String instrumentName) {
+        return INSTRUMENT_MAP.getOrDefault(instrumentName, 0);
+    }
+
+    public void playSingleNote(int note, String instrumentName) {
+        playSingleNote(note, instrumentName, System.nanoTime());
+    }
+
+    public void playSingleNote(int note, String instrumentName, long inputNanos) {
+        PcmMixer mixer = pcmMixer;
+        if (mixer != null && mixer.trigger(programFor(instrumentName), note, inputNanos)) return;
+        if (liveEngine == null) return;
+        liveEngine.noteOn(note, instrumentName, LIVE_NOTE_MILLIS, inputNanos);
+    }
+
+    public LivePlayEngine getLiveEngine() {
+        return liveEngine;
+    }
+
+    /**
+     * Plays live notes from pre-rendered audio through a small output line
+     * instead of the synthesizer. When it is turned on, every live pitch
+     * of every instrument is queued for rendering; notes not rendered yet
+     * still go to the synthesizer. Turning it off closes the line, the
+     * mixer thread and the rendering synthesizer, and frees the cache.
+     *
+     * @return whether the mode is on; false if no audio output could be opened
+     */
+    public synchronized boolean setLowLatencyLive(boolean enabled) {
+        if (enabled && pcmMixer == null) {
+            noteCache = new PcmNoteCache(LIVE_NOTE_MILLIS, LIVE_TAIL_MILLIS, NOTE_CACHE_BYTES);
+            PcmMixer mixer = new PcmMixer(noteCache);
+            try {
+                mixer.open(PCM_LINE_FRAMES);
+            } catch (Exception e) {
+                e.printStackTrace();
+                noteCache.close();
+                noteCache = null;
+                return false;
+            }
+            pcmMixer = mixer;
+            noteCache.prewarm(INSTRUMENT_MAP.values().stream().mapToInt(Integer::intValue).toArray(),
+                    LIVE_LOW_PITCH, LIVE_HIGH_PITCH);
+        } else if (!enabled && pcmMixer != null) {
+            pcmMixer.close();
+            pcmMixer = null;
+            noteCache.close();
+            noteCache = null;
+        }
+        return enabled;
+    }
+
+    /** Latency of the live path in use, for comparing the two. */
+    public synchronized String liveLatencySummary() {
+        StringBuilder summary = new StringBuilder();
+        if (liveEngine != null) summary.append(liveEngine.latencySummary());
+        if (pcmMixer != null) summary.append(summary.length() > 0 ? "\n" : "").append(pcmMixer.latencySummary());
+        return summary.toString();
+    }
+}
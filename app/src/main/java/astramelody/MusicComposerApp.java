@@ -0,0 +1,560 @@
+package astramelody;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+
+public class MusicComposerApp {
+
+    // Playback diagnostics; the timings behind them are also Telemetry stages in JMX
+    private static final Logger LOG = Logger.getLogger(MusicComposerApp.class.getName());
+
+    private static Melody lastGeneratedMelody;
+    // What the last melody was generated from, for regenerating its bars
+    private static long lastSeed;
+    private static String lastMood;
+    private static long barVariant;
+    private static final LiveRecorder recorder = new LiveRecorder();
+    // When the EDT took the key event being handled off the queue; EDT only
+    private static long keyEventNanos;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("batch")) {
+            BatchExporter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("train") || args[0].equals("serve") || args[0].equals("loadtest"))) {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+            try {
+                if (args[0].equals("train")) {
+                    MarkovTrainer.main(rest);
+                } else if (args[0].equals("serve")) {
+                    MelodyServer.main(rest);
+                } else {
+                    LoadTest.main(rest);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("AstraMelody");
+            frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+            // Use a custom particle background panel (animated) instead of the static gradient
+            ParticleBackgroundPanel backgroundPanel = new ParticleBackgroundPanel();
+            backgroundPanel.setLayout(new BoxLayout(backgroundPanel, BoxLayout.Y_AXIS));
+            frame.setContentPane(backgroundPanel);
+
+            // === Heading Label ===
+            JLabel headingLabel = new JLabel("AstraMelody", SwingConstants.CENTER);
+            headingLabel.setFont(new Font("SansSerif", Font.BOLD, 48));
+            headingLabel.setForeground(new Color(255, 215, 0)); // bright gold
+            headingLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            headingLabel.setBorder(new EmptyBorder(40, 0, 20, 0));
+            backgroundPanel.add(headingLabel);
+
+            // === Glassmorphism Container ===
+            JPanel glassPanel = new CachedChromePanel(MusicComposerApp::paintGlassChrome);
+            glassPanel.setLayout(new GridBagLayout());
+            glassPanel.setBorder(new EmptyBorder(50, 60, 50, 60));
+
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.fill = GridBagConstraints.HORIZONTAL;
+            gbc.insets = new Insets(15, 25, 15, 25);
+            gbc.gridx = 0;
+            gbc.gridy = 0;
+
+            Font font = new Font("SansSerif", Font.BOLD, 28);
+            Font labelFont = new Font("SansSerif", Font.PLAIN, 24);
+            Color textColor = new Color(255, 215, 0); // gold for labels
+
+            JLabel moodLabel = new JLabel("🎭 Mood:");
+            moodLabel.setForeground(textColor);
+            moodLabel.setFont(font);
+            JLabel keyLabel = new JLabel("🎵 Key:");
+            keyLabel.setForeground(textColor);
+            keyLabel.setFont(font);
+            JLabel instrumentLabel = new JLabel("🎹 Instrument:");
+            instrumentLabel.setForeground(textColor);
+            instrumentLabel.setFont(font);
+            JLabel tempoLabel = new JLabel("🎚 Tempo (BPM):");
+            tempoLabel.setForeground(textColor);
+            tempoLabel.setFont(font);
+            JLabel barsLabel = new JLabel("🎶 Bars:");
+            barsLabel.setForeground(textColor);
+            barsLabel.setFont(font);
+
+            String[] moods = {"Happy", "Sad", "Spooky", "Relaxed"};
+            JComboBox<String> moodBox = new JComboBox<>(moods);
+            moodBox.setFont(font);
+            moodBox.setBackground(new Color(50, 50, 50));
+            moodBox.setForeground(Color.WHITE);
+
+            JComboBox<MusicTheory.Key> keyBox = new JComboBox<>(MusicTheory.keys().toArray(new MusicTheory.Key[0]));
+            keyBox.setMaximumRowCount(MusicTheory.Mode.values().length * 2);
+            keyBox.setFont(font);
+            keyBox.setBackground(new Color(50, 50, 50));
+            keyBox.setForeground(Color.WHITE);
+
+            String[] instruments = {"Piano", "Synth", "Guitar"};
+            JComboBox<String> instrumentBox = new JComboBox<>(instruments);
+            instrumentBox.setFont(font);
+            instrumentBox.setBackground(new Color(50, 50, 50));
+            instrumentBox.setForeground(Color.WHITE);
+
+            JSlider tempoSlider = new JSlider(60, 180, 120);
+            tempoSlider.setMajorTickSpacing(30);
+            tempoSlider.setMinorTickSpacing(10);
+            tempoSlider.setPaintTicks(true);
+            tempoSlider.setPaintLabels(true);
+            tempoSlider.setFont(new Font("SansSerif", Font.PLAIN, 18));
+            tempoSlider.setForeground(new Color(255, 215, 0));
+            tempoSlider.setOpaque(false);
+
+            UIManager.put("Slider.labelColor", new Color(255, 215, 0));
+
+            JSpinner barsSpinner = new JSpinner(new SpinnerNumberModel(8, 1, 1_000_000, 8));
+            barsSpinner.setFont(font);
+            JSpinner barSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 1_000_000, 1));
+            barSpinner.setFont(font);
+
+            JProgressBar progressBar = new JProgressBar(0, 100);
+            progressBar.setStringPainted(true);
+            progressBar.setFont(new Font("SansSerif", Font.PLAIN, 18));
+            progressBar.setForeground(new Color(255, 215, 0));
+            progressBar.setBackground(new Color(50, 50, 50));
+
+            Color gold = new Color(255, 215, 0);
+            JButton generateButton = new ChromeButton("🎼 Generate", gold, 2);
+            JButton playButton = new ChromeButton("▶️ Play", gold, 2);
+            JButton queueButton = new ChromeButton("➕ Queue", gold, 2);
+            JButton regenerateBarButton = new ChromeButton("🎲 New Bar", gold, 2);
+            JCheckBox loopCheck = new JCheckBox(" Loop Playback");
+            JCheckBox preciseCheck = new JCheckBox(" Swing & Humanize");
+            JButton saveButton = new ChromeButton("💾 Save MIDI", gold, 2);
+            JCheckBox liveModeCheck = new JCheckBox(" Live Play Mode (F1–F12)");
+            JCheckBox recordModeCheck = new JCheckBox(" Record Live Play");
+            JCheckBox quantizeCheck = new JCheckBox(" Quantize Recording (1/16)");
+            JCheckBox lowLatencyCheck = new JCheckBox(" Low-Latency Live (PCM)");
+            JButton saveRecordingButton = new ChromeButton("💾 Save Recording", gold, 2);
+            JButton exportWavButton = new ChromeButton("🎧 Export WAV", gold, 2);
+            JCheckBox endlessModeCheck = new JCheckBox(" Endless Ambient Mode");
+            JButton cancelButton = new ChromeButton("✖ Cancel", gold, 2);
+
+            JButton[] buttons = {generateButton, playButton, queueButton, regenerateBarButton, saveButton, saveRecordingButton, exportWavButton, cancelButton};
+            for (JButton btn : buttons) {
+                btn.setFont(new Font("SansSerif", Font.BOLD, 26));
+                btn.setBackground(new Color(45, 45, 45));
+                btn.setForeground(new Color(255, 215, 0));
+                btn.setFocusPainted(false);
+                btn.setBorder(BorderFactory.createCompoundBorder(
+                        BorderFactory.createLineBorder(new Color(255, 215, 0), 2),
+                        BorderFactory.createEmptyBorder(12, 24, 12, 24)
+                ));
+                btn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+
+                // Hover effect
+                btn.addMouseListener(new MouseAdapter() {
+                    public void mouseEntered(MouseEvent e) {
+                        btn.setBackground(new Color(255, 215, 0));
+                        btn.setForeground(new Color(20, 20, 20));
+                    }
+
+                    public void mouseExited(MouseEvent e) {
+                        btn.setBackground(new Color(45, 45, 45));
+                        btn.setForeground(new Color(255, 215, 0));
+                    }
+                });
+            }
+            liveModeCheck.setFont(font);
+            recordModeCheck.setFont(font);
+            liveModeCheck.setForeground(textColor);
+            recordModeCheck.setForeground(textColor);
+            liveModeCheck.setOpaque(false);
+            recordModeCheck.setOpaque(false);
+            endlessModeCheck.setFont(font);
+            endlessModeCheck.setForeground(textColor);
+            endlessModeCheck.setOpaque(false);
+            loopCheck.setFont(font);
+            loopCheck.setForeground(textColor);
+            loopCheck.setOpaque(false);
+            preciseCheck.setFont(font);
+            preciseCheck.setForeground(textColor);
+            preciseCheck.setOpaque(false);
+            quantizeCheck.setFont(font);
+            quantizeCheck.setForeground(textColor);
+            quantizeCheck.setOpaque(false);
+            lowLatencyCheck.setFont(font);
+            lowLatencyCheck.setForeground(textColor);
+            lowLatencyCheck.setOpaque(false);
+
+            // Add UI Elements
+            glassPanel.add(moodLabel, gbc);
+            gbc.gridx++;
+            glassPanel.add(moodBox, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(keyLabel, gbc);
+            gbc.gridx++;
+            glassPanel.add(keyBox, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(instrumentLabel, gbc);
+            gbc.gridx++;
+            glassPanel.add(instrumentBox, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(tempoLabel, gbc);
+            gbc.gridx++;
+            glassPanel.add(tempoSlider, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(barsLabel, gbc);
+            gbc.gridx++;
+            glassPanel.add(barsSpinner, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(generateButton, gbc);
+            gbc.gridx++;
+            glassPanel.add(playButton, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(regenerateBarButton, gbc);
+            gbc.gridx++;
+            glassPanel.add(barSpinner, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(queueButton, gbc);
+            gbc.gridx++;
+            glassPanel.add(loopCheck, gbc);
+            gbc.gridx = 1;
+            gbc.gridy++;
+
+            glassPanel.add(preciseCheck, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(saveButton, gbc);
+            gbc.gridx++;
+            glassPanel.add(saveRecordingButton, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(liveModeCheck, gbc);
+            gbc.gridx++;
+            glassPanel.add(recordModeCheck, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(lowLatencyCheck, gbc);
+            gbc.gridx++;
+            glassPanel.add(quantizeCheck, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(endlessModeCheck, gbc);
+            gbc.gridx++;
+            glassPanel.add(exportWavButton, gbc);
+            gbc.gridx = 0;
+            gbc.gridy++;
+
+            glassPanel.add(progressBar, gbc);
+            gbc.gridx++;
+            glassPanel.add(cancelButton, gbc);
+
+            backgroundPanel.add(glassPanel);
+            frame.setVisible(true);
+
+            // === Core Logic ===
+            MidiPlayer midiPlayer = new MidiPlayer();
+            backgroundPanel.listenTo(midiPlayer);
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    LOG.info(midiPlayer.noteVisualsSummary());
+                }
+            });
+            MelodyGenerator generator = new MelodyGenerator(loadModel());
+            TaskPipeline tasks = new TaskPipeline(2);
+
+            // Work runs off the EDT; the bar shows progress of the latest task
+            IntConsumer showProgress = progressBar::setValue;
+            Consumer<Exception> showError = ex -> {
+                ex.printStackTrace();
+                progressBar.setValue(0);
+                JOptionPane.showMessageDialog(frame, "Failed: " + ex.getMessage());
+            };
+
+            generateButton.addActionListener(e -> {
+                String mood = (String) moodBox.getSelectedItem();
+                MusicTheory.Key key = (MusicTheory.Key) keyBox.getSelectedItem();
+                int bars = (Integer) barsSpinner.getValue();
+                long seed = MelodyGenerator.newSeed();
+                progressBar.setValue(0);
+                tasks.submit("generate", progress -> generator.generate(key, mood, bars, seed, progress),
+                        showProgress, melody -> {
+                            lastGeneratedMelody = melody;
+                            lastSeed = seed;
+                            lastMood = mood;
+                            JOptionPane.showMessageDialog(frame, "Melody generated! (seed " + seed + ")");
+                        }, showError);
+            });
+
+            playButton.addActionListener(e -> {
+                if (lastGeneratedMelody == null) {
+                    JOptionPane.showMessageDialog(frame, "Please generate a melody first.");
+                    return;
+                }
+                Melody melody = lastGeneratedMelody;
+                int tempo = tempoSlider.getValue();
+                String instrument = (String) instrumentBox.getSelectedItem();
+                tasks.submit("play", progress -> {
+                    midiPlayer.playMelody(melody, tempo, instrument);
+                    return null;
+                }, null, done -> { }, showError);
+            });
+
+            queueButton.addActionListener(e -> {
+                if (lastGeneratedMelody == null) {
+                    JOptionPane.showMessageDialog(frame, "Please generate a melody first.");
+                    return;
+                }
+                midiPlayer.setTempo(tempoSlider.getValue());
+                midiPlayer.enqueueMelody(lastGeneratedMelody, (String) instrumentBox.getSelectedItem());
+            });
+
+            // Swaps in another take of one bar; a playing melody keeps playing
+            regenerateBarButton.addActionListener(e -> {
+                Melody melody = lastGeneratedMelody;
+                if (melody == null) {
+                    JOptionPane.showMessageDialog(frame, "Please generate a melody first.");
+                    return;
+                }
+                int bar = (Integer) barSpinner.getValue() - 1;
+                if (bar >= melody.bars()) {
+                    JOptionPane.showMessageDialog(frame, "The melody has " + melody.bars() + " bars.");
+                    return;
+                }
+                // Only the new bar is made here; the player rearranges and patches in the background
+                int[] notes = new int[Melody.NOTES_PER_BAR];
+                generator.generateBar(melody.key(), lastMood, lastSeed, bar, ++barVariant, notes, 0);
+                lastGeneratedMelody = midiPlayer.replaceBar(melody, bar, notes);
+            });
+
+            loopCheck.addActionListener(e -> midiPlayer.setLooping(loopCheck.isSelected()));
+            preciseCheck.addActionListener(e -> {
+                midiPlayer.setPreciseTiming(preciseCheck.isSelected());
+                if (!preciseCheck.isSelected()) {
+                    LOG.info(midiPlayer.timingSummary());
+                }
+            });
+            tempoSlider.addChangeListener(e -> midiPlayer.setTempo(tempoSlider.getValue()));
+
+            cancelButton.addActionListener(e -> {
+                tasks.cancelAll();
+                progressBar.setValue(0);
+            });
+
+            saveButton.addActionListener(e -> {
+                if (lastGeneratedMelody == null) {
+                    JOptionPane.showMessageDialog(frame, "Generate a melody first.");
+                    return;
+                }
+                JFileChooser fc = new JFileChooser();
+                if (fc.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    File file = fc.getSelectedFile();
+                    if (!file.getName().toLowerCase().endsWith(".mid")) {
+                        file = new File(file.getAbsolutePath() + ".mid");
+                    }
+                    File target = file;
+                    Melody melody = lastGeneratedMelody;
+                    int tempo = tempoSlider.getValue();
+                    String instrument = (String) instrumentBox.getSelectedItem();
+                    progressBar.setValue(0);
+                    tasks.submit("exportMidi", progress -> {
+                        midiPlayer.exportMelody(melody, tempo, instrument, target, progress);
+                        return target;
+                    }, showProgress, saved -> JOptionPane.showMessageDialog(frame, "MIDI saved!"), showError);
+                }
+            });
+
+            exportWavButton.addActionListener(e -> {
+                if (lastGeneratedMelody == null) {
+                    JOptionPane.showMessageDialog(frame, "Generate a melody first.");
+                    return;
+                }
+                JFileChooser fc = new JFileChooser();
+                if (fc.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    File file = fc.getSelectedFile();
+                    if (!file.getName().toLowerCase().endsWith(".wav")) {
+                        file = new File(file.getAbsolutePath() + ".wav");
+                    }
+                    File target = file;
+                    Melody melody = lastGeneratedMelody;
+                    int tempo = tempoSlider.getValue();
+                    String instrument = (String) instrumentBox.getSelectedItem();
+                    progressBar.setValue(0);
+                    tasks.submit("exportWav", progress -> {
+                        midiPlayer.exportAudio(melody, tempo, instrument, target, progress);
+                        return target;
+                    }, showProgress, saved -> JOptionPane.showMessageDialog(frame, "WAV saved!"), showError);
+                }
+            });
+
+            liveModeCheck.addActionListener(e -> {
+                if (!liveModeCheck.isSelected()) {
+                    LOG.info(midiPlayer.liveLatencySummary());
+                }
+            });
+
+            lowLatencyCheck.addActionListener(e -> {
+                boolean enable = lowLatencyCheck.isSelected();
+                if (midiPlayer.setLowLatencyLive(enable) != enable) {
+                    lowLatencyCheck.setSelected(false);
+                    JOptionPane.showMessageDialog(frame, "No audio output available for low-latency live play.");
+                }
+            });
+
+            endlessModeCheck.addActionListener(e -> {
+                if (endlessModeCheck.isSelected()) {
+                    midiPlayer.startEndless(generator, (MusicTheory.Key) keyBox.getSelectedItem(),
+                            (String) moodBox.getSelectedItem(), tempoSlider.getValue(),
+                            (String) instrumentBox.getSelectedItem());
+                } else {
+                    midiPlayer.stopEndless();
+                }
+            });
+
+            recordModeCheck.addActionListener(e -> {
+                if (recordModeCheck.isSelected()) {
+                    recorder.start();
+                } else {
+                    recorder.stop();
+                }
+                JOptionPane.showMessageDialog(frame, recorder.isRecording() ? "Recording started!" : "Recording stopped!");
+            });
+
+            saveRecordingButton.addActionListener(e -> {
+                if (recorder.getNoteCount() == 0) {
+                    JOptionPane.showMessageDialog(frame, "No recorded notes.");
+                    return;
+                }
+                JFileChooser fc = new JFileChooser();
+                if (fc.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    File file = fc.getSelectedFile();
+                    if (!file.getName().toLowerCase().endsWith(".mid")) {
+                        file = new File(file.getAbsolutePath() + ".mid");
+                    }
+                    File target = file;
+                    int tempo = tempoSlider.getValue();
+                    String instrument = (String) instrumentBox.getSelectedItem();
+                    int quantize = quantizeCheck.isSelected() ? 4 : 0;
+                    progressBar.setValue(0);
+                    tasks.submit("saveRecording", progress -> {
+                        midiPlayer.exportRecording(recorder, tempo, instrument, quantize, target);
+                        return target;
+                    }, showProgress, saved -> JOptionPane.showMessageDialog(frame, "Recording saved!"), showError);
+                }
+            });
+
+            // === Live Mode Key Bindings ===
+            // Stamped before focus handling and key bindings run, so the
+            // latency measured includes them
+            KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(e -> {
+                if (e.getID() != KeyEvent.KEY_TYPED) keyEventNanos = System.nanoTime();
+                return false;
+            });
+            JRootPane rootPane = frame.getRootPane();
+            for (int i = 0; i < 12; i++) {
+                final int note = 60 + i;
+                String keyName = "F" + (i + 1);
+                KeyStroke keyStroke = KeyStroke.getKeyStroke(keyName);
+                rootPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                        .put(keyStroke, "playNote" + i);
+                rootPane.getActionMap().put("playNote" + i, new AbstractAction() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        long inputNanos = keyEventNanos;
+                        if (liveModeCheck.isSelected()) {
+                            String instrument = (String) instrumentBox.getSelectedItem();
+                            midiPlayer.playSingleNote(note, instrument, inputNanos);
+                            recorder.noteOn(note, LivePlayEngine.VELOCITY, inputNanos);
+                        }
+                    }
+                });
+                rootPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                        .put(KeyStroke.getKeyStroke("released " + keyName), "releaseNote" + i);
+                rootPane.getActionMap().put("releaseNote" + i, new AbstractAction() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        recorder.noteOff(note, keyEventNanos);
+                    }
+                });
+            }
+        });
+    }
+
+    // Trained melody model named by -Dastramelody.model, if any
+    private static MarkovModel loadModel() {
+        String path = System.getProperty("astramelody.model");
+        if (path == null) return null;
+        try {
+            return MarkovModel.load(new File(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Glassmorphism container chrome, rendered once per size by CachedChromePanel
+    private static void paintGlassChrome(Graphics2D g2, int w, int h, int state) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Subtle outer shadow
+        g2.setColor(new Color(0, 0, 0, 80));
+        g2.fillRoundRect(5, 5, w - 10, h - 10, 55, 55);
+
+        // Main panel with gradient
+        GradientPaint gradient = new GradientPaint(
+                0, 0, new Color(32, 32, 32),
+                0, h, new Color(20, 20, 20)
+        );
+        g2.setPaint(gradient);
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.95f));
+        g2.fillRoundRect(0, 0, w, h, 50, 50);
+
+        // Subtle inner highlight
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.1f));
+        g2.setColor(Color.WHITE);
+        g2.drawRoundRect(2, 2, w - 4, h - 4, 48, 48);
+
+        // Gold border with glow
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f));
+        g2.setColor(new Color(255, 215, 0));
+        g2.setStroke(new BasicStroke(6));
+        g2.drawRoundRect(-1, -1, w + 2, h + 2, 52, 52);
+
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.8f));
+        g2.setStroke(new BasicStroke(2));
+        g2.drawRoundRect(0, 0, w - 1, h - 1, 50, 50);
+    }
+}
@@ -0,0 +1,248 @@
+// MusicTheory.java (Keys, modes and diatonic harmony as lookup tables)
+package astramelody;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every key the app knows, twelve roots by seven modes, with its scale,
+ * pitch-class to scale-degree map and diatonic triads worked out once at
+ * class load. Names are only parsed at the edges (UI, command line, model
+ * files); generation and arrangement index plain arrays.
+ */
+public final class MusicTheory {
+
+    public enum Root {
+        C("C"), C_SHARP("C#"), D("D"), E_FLAT("Eb"), E("E"), F("F"),
+        F_SHARP("F#"), G("G"), A_FLAT("Ab"), A("A"), B_FLAT("Bb"), B("B");
+
+        private final String label;
+
+        Root(String label) {
+            this.label = label;
+        }
+
+        public int pitchClass() {
+            return ordinal();
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public enum Mode {
+        MAJOR("Major", 0, 2, 4, 5, 7, 9, 11),
+        MINOR("Minor", 0, 2, 3, 5, 7, 8, 10),
+        DORIAN("Dorian", 0, 2, 3, 5, 7, 9, 10),
+        PHRYGIAN("Phrygian", 0, 1, 3, 5, 7, 8, 10),
+        LYDIAN("Lydian", 0, 2, 4, 6, 7, 9, 11),
+        MIXOLYDIAN("Mixolydian", 0, 2, 4, 5, 7, 9, 10),
+        LOCRIAN("Locrian", 0, 1, 3, 5, 6, 8, 10);
+
+        private final String label;
+        private final int[] steps; // semitones above the tonic, per degree
+        // Per degree and inversion: {0, low, middle, high} above the chord root
+        private final int[] voicings = new int[DEGREES * INVERSIONS * SLOTS];
+        // Inversion to move to, per (previous degree, previous inversion, degree)
+        private final byte[] leading = new byte[DEGREES * INVERSIONS * DEGREES];
+
+        Mode(String label, int... steps) {
+            this.label = label;
+            this.steps = steps;
+            for (int d = 0; d < DEGREES; d++) {
+                int third = Math.floorMod(steps[(d + 2) % DEGREES] - steps[d], 12);
+                int fifth = Math.floorMod(steps[(d + 4) % DEGREES] - steps[d], 12);
+                setVoicing(d, 0, 0, third, fifth);
+                setVoicing(d, 1, third - 12, fifth - 12, 0);
+                setVoicing(d, 2, fifth - 12, 0, third);
+            }
+            for (int from = 0; from < DEGREES * INVERSIONS; from++) {
+                for (int d = 0; d < DEGREES; d++) {
+                    leading[from * DEGREES + d] = (byte) closestInversion(from / INVERSIONS, from % INVERSIONS, d);
+                }
+            }
+        }
+
+        private void setVoicing(int degree, int inversion, int low, int middle, int high) {
+            int base = (degree * INVERSIONS + inversion) * SLOTS;
+            voicings[base + 1] = low;
+            voicings[base + 2] = middle;
+            voicings[base + 3] = high;
+        }
+
+        // The inversion of the triad on degree whose voices move least, by
+        // pitch class, from the given chord; root position wins ties
+        private int closestInversion(int fromDegree, int fromInversion, int degree) {
+            int from = (fromDegree * INVERSIONS + fromInversion) * SLOTS;
+            int best = 0;
+            int bestCost = Integer.MAX_VALUE;
+            for (int inversion = 0; inversion < INVERSIONS; inversion++) {
+                int to = (degree * INVERSIONS + inversion) * SLOTS;
+                int cost = 0;
+                for (int slot = 1; slot < SLOTS; slot++) {
+                    int move = Math.floorMod(steps[degree] + voicings[to + slot]
+                            - steps[fromDegree] - voicings[from + slot], 12);
+                    cost += Math.min(move, 12 - move);
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = inversion;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    static final int DEGREES = 7;
+    static final int INVERSIONS = 3;
+    /** Voicing slots: the melody note itself, then the chord from low to high. */
+    static final int SLOTS = 4;
+
+    // Chord for notes outside the key, and for melodies without one: the
+    // major triad in root position the arrangement always used
+    private static final int[] CHROMATIC = {0, 0, 4, 7};
+
+    // Tonics sit between E3 and D#4 so every scale fits the instruments' range
+    private static final int LOWEST_TONIC = 52;
+
+    private static final Key[] KEYS = new Key[Root.values().length * Mode.values().length];
+    private static final Map<String, Key> BY_NAME = new HashMap<>();
+    static {
+        for (Root root : Root.values()) {
+            for (Mode mode : Mode.values()) {
+                Key key = new Key(root, mode, root.ordinal() * Mode.values().length + mode.ordinal());
+                KEYS[key.index] = key;
+                BY_NAME.put(key.name, key);
+            }
+        }
+    }
+    private static final List<Key> ALL = Collections.unmodifiableList(Arrays.asList(KEYS));
+
+    private MusicTheory() {
+    }
+
+    /** One root in one mode. Instances are shared and immutable. */
+    public static final class Key {
+        private final Root root;
+        private final Mode mode;
+        private final int index;
+        private final String name;
+        private final int[] scale = new int[DEGREES + 1];
+        private final byte[] degree = new byte[12];
+
+        private Key(Root root, Mode mode, int index) {
+            this.root = root;
+            this.mode = mode;
+            this.index = index;
+            this.name = root + " " + mode;
+            int tonic = LOWEST_TONIC + Math.floorMod(root.pitchClass() - LOWEST_TONIC, 12);
+            Arrays.fill(degree, (byte) -1);
+            for (int d = 0; d < DEGREES; d++) {
+                scale[d] = tonic + mode.steps[d];
+                degree[(root.pitchClass() + mode.steps[d]) % 12] = (byte) d;
+            }
+            scale[DEGREES] = tonic + 12;
+        }
+
+        public static Key of(Root root, Mode mode) {
+            return KEYS[root.ordinal() * Mode.values().length + mode.ordinal()];
+        }
+
+        /** The key named like {@code "F# Dorian"}, or {@code null}. */
+        public static Key parse(String name) {
+            return name == null ? null : BY_NAME.get(name);
+        }
+
+        public Root root() {
+            return root;
+        }
+
+        public Mode mode() {
+            return mode;
+        }
+
+        /** Position in {@link #all()}. */
+        public int index() {
+            return index;
+        }
+
+        /** The eight-note scale, tonic to octave, as MIDI pitches; do not modify. */
+        int[] scale() {
+            return scale;
+        }
+
+        /** Scale degree (0-6) of {@code pitch}, or -1 if it is outside the key. */
+        public int degreeOf(int pitch) {
+            return degree[Math.floorMod(pitch, 12)];
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** All keys, grouped by root in chromatic order. */
+    public static List<Key> keys() {
+        return ALL;
+    }
+
+    /**
+     * Walks a melody note by note and gives the chord voicing under each:
+     * the diatonic triad on the note's scale degree, in the inversion that
+     * moves least from the previous chord. One instance per rendering pass;
+     * {@link #next} does two array reads and allocates nothing.
+     */
+    static final class Harmony {
+        private final Key key;
+        private int[] voicings = CHROMATIC;
+        private int base;
+        private int previous = -1; // degree * INVERSIONS + inversion
+
+        /** @param key the melody's key, or {@code null} for plain major triads */
+        Harmony(Key key) {
+            this.key = key;
+        }
+
+        /** Moves to the chord under {@code note}. */
+        void next(int note) {
+            int degree = key == null ? -1 : key.degree[Math.floorMod(note, 12)];
+            if (degree < 0) {
+                voicings = CHROMATIC;
+                base = 0;
+                previous = -1;
+                return;
+            }
+            Mode mode = key.mode;
+            int inversion = previous < 0 ? 0 : mode.leading[previous * DEGREES + degree];
+            previous = degree * INVERSIONS + inversion;
+            voicings = mode.voicings;
+            base = previous * SLOTS;
+        }
+
+        /** Semitones above the melody note for one voice of a layer. */
+        int interval(int layer, int voice) {
+            return voicings[base + Arrangement.slot(layer, voice)];
+        }
+
+        /** The chord last moved to, which is all that decides the next voicing. */
+        int state() {
+            return previous;
+        }
+
+        /** Continues from a {@link #state()}; call {@link #next} before {@link #interval}. */
+        void resume(int state) {
+            previous = state;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// NoteBridge.java (Lock-free hand-off of played notes to the visuals)
+package astramelody;
+
+import java.util.Arrays;
+import javax.sound.midi.*;
+
+/**
+ * Carries the notes being played from the MIDI threads to the particle
+ * animation. Each playback source gets its own {@link Tap}, a
+ * {@link Receiver} that packs every note-on into an {@link EventRing}, so
+ * each ring keeps exactly one producer; the render loop drains all of them
+ * once a frame. A tap never blocks or allocates: when its ring is full the
+ * note is dropped and counted, and while nothing is drawing it ignores
+ * notes altogether, so the visuals can fall behind but never hold up
+ * playback.
+ */
+final class NoteBridge {
+
+    static final int RING_CAPACITY = 1024; // a minute of the full arrangement at 120 BPM; a frame needs a few
+
+    private volatile Tap[] taps = new Tap[0];
+    private volatile boolean listening;
+    private volatile long delivered; // written by the consumer only
+
+    /** A new receiver for one source; {@code name} labels it in {@link #summary()}. */
+    synchronized Tap tap(String name) {
+        Tap tap = new Tap(name);
+        Tap[] grown = Arrays.copyOf(taps, taps.length + 1);
+        grown[taps.length] = tap;
+        taps = grown;
+        return tap;
+    }
+
+    /** Whether a consumer is draining; taps ignore notes while it is not. */
+    void setListening(boolean listening) {
+        this.listening = listening;
+    }
+
+    /** Consumer side. Hands every waiting note to {@code sink}; returns how many. */
+    int drain(EventRing.Sink sink) {
+        int n = 0;
+        for (Tap tap : taps) {
+            n += tap.ring.drain(sink);
+        }
+        delivered += n;
+        return n;
+    }
+
+    long dropped() {
+        long dropped = 0;
+        for (Tap tap : taps) {
+            dropped += tap.ring.dropped();
+        }
+        return dropped;
+    }
+
+    String summary() {
+        StringBuilder sb = new StringBuilder(String.format("note events to visuals: %d delivered, %d dropped",
+                delivered, dropped()));
+        for (Tap tap : taps) {
+            sb.append(String.format("; %s %d dropped", tap.name, tap.ring.dropped()));
+        }
+        return sb.toString();
+    }
+
+    static int channel(long payload) {
+        return (int) (payload >>> 16) & 0xf;
+    }
+
+    static int pitch(long payload) {
+        return (int) (payload >>> 8) & 0x7f;
+    }
+
+    static int velocity(long payload) {
+        return (int) payload & 0x7f;
+    }
+
+    /** Packs note-ons from one thread into the bridge. */
+    final class Tap implements Receiver {
+        private final String name;
+        private final EventRing ring = new EventRing(RING_CAPACITY);
+
+        private Tap(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void send(MidiMessage message, long timeStamp) {
+            if (!listening || !(message instanceof ShortMessage)) return;
+            ShortMessage sm = (ShortMessage) message;
+            if (sm.getCommand() != ShortMessage.NOTE_ON || sm.getData2() == 0) return;
+            ring.offer(System.nanoTime(), sm.getChannel() << 16 | sm.getData1() << 8 | sm.getData2());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+// OfflineSynthesizer.java (Pull-mode access to the JDK software synthesizer)
+package astramelody;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Opens the JDK software synthesizer as a stream that renders samples only
+ * as they are read, instead of into an audio line. Only the internal
+ * {@code com.sun.media.sound.AudioSynthesizer} offers this, and this is the
+ * one class that touches it. It is looked up by name, so compiling needs
+ * no access to the internal package and javac has nothing to warn about.
+ * Running still needs the package exported: the jar manifest does that,
+ * and other launchers need
+ * {@code --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED}.
+ */
+final class OfflineSynthesizer {
+
+    private static final String AUDIO_SYNTHESIZER = "com.sun.media.sound.AudioSynthesizer";
+
+    private OfflineSynthesizer() {
+    }
+
+    /**
+     * Opens {@code synth} in streaming mode with the given
+     * {@code AudioSynthesizer} options; closing the synthesizer ends the stream.
+     */
+    static AudioInputStream openStream(Synthesizer synth, AudioFormat format, Map<String, Object> info)
+            throws MidiUnavailableException {
+        Method open;
+        try {
+            open = Class.forName(AUDIO_SYNTHESIZER).getMethod("openStream", AudioFormat.class, Map.class);
+        } catch (ReflectiveOperationException e) {
+            throw unavailable("this JDK has no offline synthesizer", e);
+        }
+        if (!open.getDeclaringClass().isInstance(synth)) {
+            throw new MidiUnavailableException("default synthesizer cannot render offline");
+        }
+        try {
+            return (AudioInputStream) open.invoke(synth, format, info);
+        } catch (IllegalAccessException e) {
+            throw unavailable("java.desktop/com.sun.media.sound is not exported", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof MidiUnavailableException) throw (MidiUnavailableException) e.getCause();
+            throw unavailable("cannot open the synthesizer stream", e.getCause());
+        }
+    }
+
+    private static MidiUnavailableException unavailable(String message, Throwable cause) {
+        MidiUnavailableException e = new MidiUnavailableException(message);
+        e.initCause(cause);
+        return e;
+    }
+}
@@ -0,0 +1,155 @@
+// PackedSequence.java (Arrangement events packed into a primitive array)
+package astramelody;
+
+import java.util.Arrays;
+
+/**
+ * The layered arrangement of a melody as a sorted array of packed
+ * {@code long} events, for {@link EventScheduler}. Each event holds its
+ * tick in the high 40 bits and the status and two data bytes of a short
+ * MIDI message in the low 24, so sorting the array sorts by tick, with
+ * note-offs ahead of note-ons on the same tick.
+ *
+ * <p>Eight bytes per event, against a {@link javax.sound.midi.MidiEvent},
+ * its slot in the track's list and its entry in the track's hash set for
+ * the {@link javax.sound.midi.Sequence} that {@link ArrangementCompiler}
+ * builds.
+ *
+ * <p>The arrangement grid is scaled to {@code ppq} ticks per quarter note,
+ * which leaves room to move events off it: swing delays every second
+ * sixteenth, and humanizing delays the attacks of each melody step and
+ * varies its velocities by a random amount drawn from the seed, so a
+ * given seed always sounds the same. Releases stay on the grid, so a
+ * delayed attack never lands before the release of the same pitch.
+ */
+public final class PackedSequence {
+
+    private static final int TICK_SHIFT = 24;
+
+    private final long[] events;
+    private final int ppq;
+    private final long lengthTicks;
+
+    private PackedSequence(long[] events, int ppq, long lengthTicks) {
+        this.events = events;
+        this.ppq = ppq;
+        this.lengthTicks = lengthTicks;
+    }
+
+    /** The plain arrangement at {@code ppq}, on the grid. */
+    public static PackedSequence compile(Melody melody, int ppq) {
+        return compile(melody, ppq, 0.5, 0, 0, 0);
+    }
+
+    /**
+     * @param swing             share of each pair of sixteenths taken by the
+     *                          first, from 0.5 (straight) to 0.75 (dotted)
+     * @param humanizeTicks     largest delay of a melody step's attacks, in ticks
+     * @param humanizeVelocity  largest change to a velocity
+     * @param seed              seed for the humanizing
+     */
+    public static PackedSequence compile(Melody melody, int ppq, double swing, int humanizeTicks,
+                                         int humanizeVelocity, long seed) {
+        int scale = ppq / Arrangement.RESOLUTION;
+        if (scale < 1 || ppq % Arrangement.RESOLUTION != 0) {
+            throw new IllegalArgumentException("ppq must be a multiple of " + Arrangement.RESOLUTION + ": " + ppq);
+        }
+        if (swing < 0.5 || swing > 0.75) {
+            throw new IllegalArgumentException("swing must be from 0.5 to 0.75: " + swing);
+        }
+        // An arrangement tick is one sixteenth; odd ones are swung late
+        int swingTicks = (int) Math.round((swing - 0.5) * 2 * scale);
+        // Less than a sixteenth, so a delayed attack stays with its step
+        int maxDelay = Math.min(humanizeTicks, scale - 1);
+
+        int count = 0;
+        for (int i = 0; i < melody.length(); i++) {
+            if (melody.note(i) != Melody.REST) count++;
+        }
+        int perNote = 0;
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            perNote += 2 * Arrangement.voiceCount(layer);
+        }
+        long[] events = new long[count * perNote];
+
+        SeededRandom random = new SeededRandom(seed);
+        Arrangement.forEachEvent(melody, new Arrangement.Sink<RuntimeException>() {
+            int n;
+            int delay;
+            int velocity;
+
+            @Override
+            public void step(int index, int note) {
+                if (note != Melody.REST) delay = maxDelay > 0 ? random.nextInt(maxDelay + 1) : 0;
+            }
+
+            @Override
+            public void voice(int layer, int v, int pitch, long onTick, long offTick) {
+                if (v == 0) {
+                    velocity = Arrangement.VELOCITY[layer];
+                    if (humanizeVelocity > 0) {
+                        velocity += random.nextInt(2 * humanizeVelocity + 1) - humanizeVelocity;
+                        velocity = Math.max(1, Math.min(127, velocity));
+                    }
+                }
+                if (pitch < 0 || pitch > 127) {
+                    throw new IllegalArgumentException("pitch out of range: " + pitch);
+                }
+                int channel = Arrangement.CHANNEL[layer];
+                long off = swung(offTick, scale, swingTicks);
+                // A swung sixteenth may have less room than the delay
+                long on = Math.min(swung(onTick, scale, swingTicks) + delay, off - 1);
+                events[n++] = pack(on, 0x90 | channel, pitch, velocity);
+                events[n++] = pack(off, 0x80 | channel, pitch, Arrangement.VELOCITY[layer]);
+            }
+        });
+        Arrays.sort(events);
+        return new PackedSequence(events, ppq, (long) melody.length() * Arrangement.TICKS_PER_NOTE * scale);
+    }
+
+    private static long swung(long tick, int scale, int swingTicks) {
+        return tick * scale + ((tick & 1) != 0 ? swingTicks : 0);
+    }
+
+    static long pack(long tick, int status, int data1, int data2) {
+        return tick << TICK_SHIFT | (status & 0xff) << 16 | (data1 & 0xff) << 8 | (data2 & 0xff);
+    }
+
+    static long tick(long event) {
+        return event >>> TICK_SHIFT;
+    }
+
+    static int status(long event) {
+        return (int) (event >>> 16) & 0xff;
+    }
+
+    static int data1(long event) {
+        return (int) (event >>> 8) & 0xff;
+    }
+
+    static int data2(long event) {
+        return (int) event & 0xff;
+    }
+
+    long event(int index) {
+        return events[index];
+    }
+
+    public int size() {
+        return events.length;
+    }
+
+    public int getPpq() {
+        return ppq;
+    }
+
+    /** Ticks from the first melody step to the end of the last, where a loop wraps. */
+    public long getLengthTicks() {
+        return lengthTicks;
+    }
+
+    /** Bytes held by the event array. */
+    public long memoryBytes() {
+        return 16 + 8L * events.length;
+    }
+}
@@ -0,0 +1,290 @@
+package astramelody;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import javax.swing.*;
+
+/**
+ * Dynamic starfield + floating dots background panel for premium UI.
+ * The dots are moved and drawn off the EDT by a {@link ParticleSimulation};
+ * painting only copies its latest frame. Once {@link #listenTo} a player,
+ * they pulse and glow with the notes it plays. The starfield, the dot
+ * sprites and the frames are all drawn at the scale of the screen, so
+ * they stay sharp on HiDPI displays.
+ */
+public class ParticleBackgroundPanel extends JPanel {
+
+    private final int starCount;
+    private final float[] starPx, starPy, starPz; // star positions
+    private final float[] starR0, starR1; // star randomness
+    private final float[] starCr, starCg, starCb; // star colors
+
+    // Render caches in device pixels; rebuilt only when the size or scale changes
+    private BufferedImage starfield;
+    private float atlasScale;
+
+    private final ParticleSimulation simulation;
+    private Window watchedWindow;
+
+    private final float spread;
+    private final float baseSize;
+    private final float sizeRandomness;
+    private final float cameraDistance;
+
+    private final Random rnd = new Random();
+    private final String[] palette = {"#FFD700", "#FFDF00", "#FFD59A", "#FFF9E6", "#FFFFFF"};
+
+    public ParticleBackgroundPanel() {
+        // Starfield tuned params
+        this.starCount = 150;
+        this.spread = 12f;
+        this.baseSize = 2f;
+        this.sizeRandomness = 0.45f;
+        this.cameraDistance = 28f;
+
+        starPx = new float[starCount];
+        starPy = new float[starCount];
+        starPz = new float[starCount];
+        starR0 = new float[starCount];
+        starR1 = new float[starCount];
+        starCr = new float[starCount];
+        starCg = new float[starCount];
+        starCb = new float[starCount];
+
+        initParticles();
+        setOpaque(true);
+
+        simulation = new ParticleSimulation(null, rnd.nextLong(), this::repaint);
+
+        // Run only while actually on screen
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) updateRunning();
+        });
+        updateRunning();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window instanceof Frame && window != watchedWindow) {
+            window.addWindowStateListener(e -> updateRunning());
+            watchedWindow = window;
+        }
+    }
+
+    private void updateRunning() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        boolean iconified = window instanceof Frame
+                && (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0;
+        if (isShowing() && !iconified) {
+            simulation.start();
+        } else {
+            simulation.stop();
+        }
+    }
+
+    /** Frames per second actually drawn by the simulation, over the last evaluation window. */
+    public double getCurrentFps() {
+        return simulation.governor().fps();
+    }
+
+    /** 99th percentile time to step and draw one simulation frame, in ms. */
+    public double getP99FrameMillis() {
+        return simulation.governor().p99Millis();
+    }
+
+    public int getQualityLevel() {
+        return simulation.governor().level();
+    }
+
+    public int getActiveDots() {
+        return simulation.activeCount();
+    }
+
+    // For benchmarks, which draw frames without showing the panel
+    ParticleSimulation simulation() {
+        return simulation;
+    }
+
+    /** Makes the dots react to the notes {@code player} plays back. */
+    public void listenTo(MidiPlayer player) {
+        simulation.setNotes(player.noteBridge());
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        // Times the whole content pane, children included
+        Telemetry.PaintEvent event = new Telemetry.PaintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        super.paint(g);
+        int dots = simulation.activeCount();
+        Telemetry.PAINT.record(System.nanoTime() - start, dots);
+        if (event.shouldCommit()) {
+            event.qualityLevel = simulation.governor().level();
+            event.dots = dots;
+            event.commit();
+        }
+    }
+
+    private void initParticles() {
+        for (int i = 0; i < starCount; i++) {
+            // Use normalized screen-space coordinates so stars are evenly dispersed
+            starPx[i] = rnd.nextFloat(); // 0..1 across width
+            starPy[i] = rnd.nextFloat(); // 0..1 across height
+            starPz[i] = rnd.nextFloat(); // depth factor 0..1 for size variation
+
+            starR0[i] = rnd.nextFloat(); // size variation
+            starR1[i] = rnd.nextFloat(); // brightness variation
+
+            float[] col = hexToRgb(palette[rnd.nextInt(palette.length)]);
+            starCr[i] = col[0];
+            starCg[i] = col[1];
+            starCb[i] = col[2];
+        }
+    }
+
+    private float[] hexToRgb(String hex) {
+        hex = hex.replaceFirst("^#", "");
+        if (hex.length() == 3) {
+            char[] cs = hex.toCharArray();
+            hex = "" + cs[0] + cs[0] + cs[1] + cs[1] + cs[2] + cs[2];
+        }
+        int val = Integer.parseInt(hex, 16);
+        float r = ((val >> 16) & 255) / 255f;
+        float g = ((val >> 8) & 255) / 255f;
+        float b = (val & 255) / 255f;
+        return new float[]{r, g, b};
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        // The starfield and the frames drawn over it are opaque and cover the
+        // whole panel, so the usual background fill from super.paintComponent
+        // is skipped
+        Graphics2D g2 = (Graphics2D) g;
+        AffineTransform transform = g2.getTransform();
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        int w = Math.max(1, (int) Math.ceil(getWidth() * scaleX));
+        int h = Math.max(1, (int) Math.ceil(getHeight() * scaleY));
+        if ((float) scaleX != atlasScale) {
+            atlasScale = (float) scaleX;
+            BufferedImage atlas = renderDotAtlas(atlasScale);
+            simulation.setAtlas(pixels(atlas), atlas.getWidth(), atlasScale);
+        }
+        if (starfield == null || starfield.getWidth() != w || starfield.getHeight() != h) {
+            starfield = renderStarfield(w, h, scaleX, scaleY);
+            simulation.setBackground(pixels(starfield), w, h);
+        }
+
+        BufferedImage frame = simulation.acquireFrame();
+        try {
+            boolean current = frame != null && frame.getWidth() == w && frame.getHeight() == h;
+            // One image pixel to one device pixel
+            g2.setTransform(AffineTransform.getTranslateInstance(
+                    Math.round(transform.getTranslateX()), Math.round(transform.getTranslateY())));
+            g2.drawImage(current ? frame : starfield, 0, 0, null);
+        } finally {
+            g2.setTransform(transform);
+            simulation.releaseFrame();
+        }
+    }
+
+    /**
+     * Rasterizes the black background and the static stars once per size,
+     * {@code deviceWidth} by {@code deviceHeight} pixels at the given screen scale.
+     */
+    private BufferedImage renderStarfield(int deviceWidth, int deviceHeight, double scaleX, double scaleY) {
+        BufferedImage image = new BufferedImage(deviceWidth, deviceHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+
+        // solid black background
+        g2.setColor(Color.BLACK);
+        g2.fillRect(0, 0, deviceWidth, deviceHeight);
+
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.scale(scaleX, scaleY);
+        float w = (float) (deviceWidth / scaleX);
+        float h = (float) (deviceHeight / scaleY);
+
+        // Draw stars
+        for (int i = 0; i < starCount; i++) {
+            float sx = starPx[i] * w;
+            float sy = starPy[i] * h;
+            float depthScale = 0.6f + 0.8f * starPz[i];
+            float size = baseSize * (1f + sizeRandomness * (starR0[i] - 0.5f)) * depthScale;
+            size = Math.max(1f, Math.min(6f, size));
+            float brightness = 0.6f + 0.4f * starR1[i];
+            int si = Math.max(1, Math.round(size));
+
+            Color outer = new Color(starCr[i], starCg[i], starCb[i], clamp(0.12f * brightness, 0f, 1f));
+            g2.setColor(outer);
+            int outerSize = si * 3;
+            g2.fillOval((int) (sx - outerSize / 2f), (int) (sy - outerSize / 2f), outerSize, outerSize);
+
+            Color main = new Color(starCr[i], starCg[i], starCb[i], clamp(0.9f * brightness, 0f, 1f));
+            g2.setColor(main);
+            g2.fillOval((int) (sx - si / 2f), (int) (sy - si / 2f), si, si);
+
+            int inner = Math.max(1, si / 2);
+            g2.setColor(new Color(1f, 0.96f, 0.6f, clamp(1f * brightness, 0f, 1f)));
+            g2.fillOval((int) (sx - inner / 2f), (int) (sy - inner / 2f), inner, inner);
+        }
+
+        g2.dispose();
+        return image;
+    }
+
+    /**
+     * One glow sprite per (dot size, alpha level), laid out as a grid with
+     * sizes down and alpha levels across, at {@code scale} device pixels
+     * per unit. Premultiplied, so the simulation can add its colour bytes
+     * straight onto a frame.
+     */
+    private static BufferedImage renderDotAtlas(float scale) {
+        int minSize = ParticleSimulation.SPRITE_MIN_SIZE;
+        int cell = ParticleSimulation.atlasCell(scale);
+        int levels = ParticleSimulation.ALPHA_LEVELS;
+        int sizes = ParticleSimulation.SPRITE_MAX_SIZE - minSize + 1;
+        BufferedImage atlas = new BufferedImage(levels * cell, sizes * cell, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = atlas.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        for (int row = 0; row < sizes; row++) {
+            int ds = minSize + row;
+            for (int col = 0; col < levels; col++) {
+                float alpha = ParticleSimulation.spriteAlpha(col);
+                int ox = col * cell;
+                int oy = row * cell;
+                int span = ParticleSimulation.glowSpan(ds, scale);
+                float dot = ds * scale;
+
+                // Outer soft glow
+                g2.setColor(new Color(255, 215, 0, (int) (alpha * 40)));
+                g2.fill(new Ellipse2D.Float(ox, oy, span, span));
+
+                // Main dot
+                g2.setColor(new Color(255, 215, 0, (int) (alpha * 255)));
+                g2.fill(new Ellipse2D.Float(ox + (span - dot) / 2, oy + (span - dot) / 2, dot, dot));
+            }
+        }
+
+        g2.dispose();
+        return atlas;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static float clamp(float v, float a, float b) {
+        return Math.max(a, Math.min(b, v));
+    }
+}
@@ -0,0 +1,456 @@
+// ParticleSimulation.java (Off-EDT particle motion and rasterization)
+package astramelody;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The floating dots of {@link ParticleBackgroundPanel}, simulated and drawn
+ * on a thread of their own so the EDT only ever copies a finished frame to
+ * the screen. Particles live in parallel arrays moved by a
+ * {@link ParticleStep}; each frame copies the static background into an
+ * {@code int[]}-backed image and adds every dot's glow sprite straight into
+ * its pixels, split into horizontal bands across the cores. Past the
+ * first {@code sprites} dots of a level the rest are single pixels in
+ * their sprite's centre colour, a fine dust behind the glowing dots: a
+ * hundred thousand sprites would cover the screen several times over and
+ * cost far more to add than to move.
+ *
+ * <p>Frames rotate through three images: the one last published, the one
+ * the EDT is painting, if any, and the one being drawn, so neither side
+ * ever waits for the other. A {@link FrameGovernor} on the simulation's
+ * own frame time picks how many dots move and how many of them glow,
+ * climbing as far as {@link #MAX_PARTICLES} while frames stay well inside
+ * the budget. {@code -Dastramelody.particles=N} caps it at the densest
+ * level with at most N dots, for machines that should spend less on the
+ * background.
+ *
+ * <p>Given a {@link NoteBridge}, each frame drains the notes played since
+ * the last one: melody notes make the dots surge forward and flash, and
+ * chord and pad notes swell their glow, in proportion to velocity. Both
+ * fade out over a few frames.
+ */
+final class ParticleSimulation {
+
+    static final int MAX_PARTICLES = 100_000;
+
+    // Sprite atlas layout, shared with the panel that renders it
+    static final int SPRITE_MIN_SIZE = 3;
+    static final int SPRITE_MAX_SIZE = 11;
+    static final int SPRITE_CELL = SPRITE_MAX_SIZE * 3 + 1;
+    static final int ALPHA_LEVELS = 16;
+    static final float DOT_ALPHA_MIN = 0.15f;
+    static final float DOT_ALPHA_MAX = 0.40f;
+
+    // Quality levels picked by the governor:
+    // {active dots, dots drawn as sprites, glow (1/0), frame period ms}
+    private static final int[][] QUALITY_LEVELS = {
+            {15, 15, 0, 50},
+            {30, 30, 0, 33},
+            {30, 30, 1, 30}, // the original look
+            {120, 120, 1, 25},
+            {500, 500, 1, 20},
+            {1500, 1500, 1, 16},
+            {16_384, 1500, 1, 16},
+            {50_000, 1500, 1, 16},
+            {MAX_PARTICLES, 1500, 1, 16}
+    };
+    private static final int DEFAULT_LEVEL = 2;
+    private static final int MAX_LEVEL = maxLevel(Integer.getInteger("astramelody.particles", MAX_PARTICLES));
+    private static final long FRAME_BUDGET_NANOS = 12_000_000; // leaves a quarter of a 60 FPS frame to spare
+    private static final float BASE_DELAY_MS = 30f; // velocities are per 30 ms
+
+    // Reaction to notes: extra speed and alpha levels at full velocity, and fade time constants
+    private static final float PULSE_SURGE = 3f;
+    private static final float PULSE_LEVELS = 6f;
+    private static final float SWELL_LEVELS = 8f;
+    private static final float PULSE_FADE_MS = 150f;
+    private static final float SWELL_FADE_MS = 600f;
+
+    private final float[] x = new float[MAX_PARTICLES];
+    private final float[] y = new float[MAX_PARTICLES];
+    private final float[] vx = new float[MAX_PARTICLES];
+    private final float[] vy = new float[MAX_PARTICLES];
+    private final int[] sprite = new int[MAX_PARTICLES];
+    private final int[] px = new int[MAX_PARTICLES];
+    private final int[] py = new int[MAX_PARTICLES];
+
+    private volatile ParticleStep stepper; // picked on the first frame unless given
+    private final FrameGovernor governor =
+            new FrameGovernor(FRAME_BUDGET_NANOS, MAX_LEVEL, DEFAULT_LEVEL);
+    private final Runnable onFrame;
+    private final int bands = Runtime.getRuntime().availableProcessors();
+    private final ExecutorService rasterizers;
+    private final List<Callable<Void>> bandTasks = new ArrayList<>();
+
+    private volatile Background background;
+    private volatile Atlas atlas;
+    private volatile int activeCount;
+    private volatile int spriteCount;
+    private volatile boolean glow;
+    private volatile long periodNanos;
+    private volatile NoteBridge notes;
+
+    // Frame rotation, guarded by this
+    private final BufferedImage[] frames = new BufferedImage[3];
+    private final int[][] framePixels = new int[3][];
+    private int front = -1;
+    private int painting = -1;
+
+    // Simulation-thread state
+    private volatile Thread thread; // the one simulating; an old one notices and exits
+    private final Object simulating = new Object();
+    private int drawing; // frame being drawn by the band tasks
+    private int drawCount;
+    private int drawSprites;
+    private boolean drawGlow;
+    private int drawBoost; // alpha levels added to every dot
+    private float pulse; // melody, 0-1
+    private float swell; // chord and pad, 0-1
+    private final EventRing.Sink noteSink = this::onNote;
+
+    // Highest level with at most the given number of dots, and never below the default
+    private static int maxLevel(int particles) {
+        int level = DEFAULT_LEVEL;
+        while (level + 1 < QUALITY_LEVELS.length && QUALITY_LEVELS[level + 1][0] <= particles) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @param stepper the motion kernel, or {@code null} to time the
+     *                candidates on the simulation thread and keep the faster
+     * @param onFrame called from the simulation thread after each frame is published
+     */
+    ParticleSimulation(ParticleStep stepper, long seed, Runnable onFrame) {
+        this.stepper = stepper;
+        this.onFrame = onFrame;
+        Random rnd = new Random(seed);
+        for (int i = 0; i < MAX_PARTICLES; i++) {
+            x[i] = rnd.nextFloat();
+            y[i] = rnd.nextFloat();
+            vx[i] = (rnd.nextFloat() - 0.5f) * 0.0003f;
+            vy[i] = (rnd.nextFloat() - 0.5f) * 0.0003f;
+            float size = 3f + rnd.nextFloat() * 8f;
+            float alpha = DOT_ALPHA_MIN + rnd.nextFloat() * (DOT_ALPHA_MAX - DOT_ALPHA_MIN);
+            sprite[i] = spriteCell(size, alpha);
+        }
+        if (bands > 1) {
+            AtomicInteger count = new AtomicInteger();
+            rasterizers = Executors.newFixedThreadPool(bands, r -> {
+                Thread t = new Thread(r, "particle-raster-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            for (int b = 0; b < bands; b++) {
+                int band = b;
+                bandTasks.add(() -> {
+                    drawBand(band);
+                    return null;
+                });
+            }
+        } else {
+            rasterizers = null;
+        }
+        applyQuality(DEFAULT_LEVEL);
+    }
+
+    static int spriteCell(float size, float alpha) {
+        int ds = Math.max(SPRITE_MIN_SIZE, Math.min(SPRITE_MAX_SIZE, Math.round(size)));
+        int level = Math.round((alpha - DOT_ALPHA_MIN) / (DOT_ALPHA_MAX - DOT_ALPHA_MIN) * (ALPHA_LEVELS - 1));
+        level = Math.max(0, Math.min(ALPHA_LEVELS - 1, level));
+        return (ds - SPRITE_MIN_SIZE) * ALPHA_LEVELS + level;
+    }
+
+    static float spriteAlpha(int level) {
+        return DOT_ALPHA_MIN + (DOT_ALPHA_MAX - DOT_ALPHA_MIN) * level / (ALPHA_LEVELS - 1);
+    }
+
+    /** Pitch in pixels of the atlas grid drawn at {@code scale} device pixels per unit. */
+    static int atlasCell(float scale) {
+        return (int) Math.ceil(SPRITE_CELL * scale);
+    }
+
+    /** Width of the glow of a dot of size {@code ds} at {@code scale}; the dot is centred in it. */
+    static int glowSpan(int ds, float scale) {
+        return Math.round(ds * 3 * scale);
+    }
+
+    // Margin of the glow around the dot itself
+    private static int glowInset(int ds, float scale) {
+        return Math.round(ds * scale);
+    }
+
+    /**
+     * The premultiplied glow sprites, {@code width} pixels wide, drawn at
+     * {@code scale} device pixels per unit in cells of {@link #atlasCell};
+     * see {@link #spriteCell}. Frames are drawn at the same scale.
+     */
+    void setAtlas(int[] pixels, int width, float scale) {
+        atlas = new Atlas(pixels, width, scale);
+    }
+
+    /** The opaque image dots are drawn over, in device pixels; frames take its size. */
+    void setBackground(int[] pixels, int width, int height) {
+        background = new Background(pixels, width, height);
+    }
+
+    /** Where played notes come from, or {@code null} for none. */
+    synchronized void setNotes(NoteBridge notes) {
+        NoteBridge previous = this.notes;
+        if (previous != null) previous.setListening(false);
+        this.notes = notes;
+        if (notes != null) notes.setListening(thread != null);
+    }
+
+    synchronized void start() {
+        if (thread != null) return;
+        Thread t = new Thread(this::run, "particle-sim");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+        NoteBridge source = notes;
+        if (source != null) source.setListening(true);
+    }
+
+    synchronized void stop() {
+        NoteBridge source = notes;
+        if (source != null) source.setListening(false);
+        Thread t = thread;
+        thread = null;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * The latest frame, held for painting until {@link #releaseFrame()};
+     * {@code null} if none has been drawn yet.
+     */
+    synchronized BufferedImage acquireFrame() {
+        if (front < 0) return null;
+        painting = front;
+        return frames[front];
+    }
+
+    synchronized void releaseFrame() {
+        painting = -1;
+    }
+
+    int activeCount() {
+        return activeCount;
+    }
+
+    FrameGovernor governor() {
+        return governor;
+    }
+
+    String stepperName() {
+        ParticleStep current = stepper;
+        return current == null ? "not chosen yet" : current.name();
+    }
+
+    /** Switches to one of the quality levels; the governor may move it again. */
+    void applyQuality(int level) {
+        int[] q = QUALITY_LEVELS[level];
+        activeCount = q[0];
+        spriteCount = q[1];
+        glow = q[2] != 0;
+        periodNanos = q[3] * 1_000_000L;
+    }
+
+    private void run() {
+        // A thread that was just stopped may still be finishing its frame
+        synchronized (simulating) {
+            governor.reset();
+            long lastStep = 0;
+            while (thread == Thread.currentThread()) {
+                long start = System.nanoTime();
+                if (drawFrame(lastStep == 0 ? 1f : Math.min(4f, (start - lastStep) / 1e6f / BASE_DELAY_MS))) {
+                    lastStep = start;
+                    onFrame.run();
+                    long frameNanos = System.nanoTime() - start;
+                    Telemetry.PARTICLE_FRAME.record(frameNanos, activeCount);
+                    if (governor.frame(start, frameNanos)) applyQuality(governor.level());
+                }
+                long wait = start + periodNanos - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /** Steps the active dots by {@code dt} and publishes a new frame; false if there is nothing to draw on. */
+    boolean drawFrame(float dt) {
+        Background bg = background;
+        if (bg == null || atlas == null) return false;
+        if (stepper == null) stepper = ParticleStep.best();
+        NoteBridge source = notes;
+        if (source != null) {
+            pulse *= (float) Math.exp(-dt * BASE_DELAY_MS / PULSE_FADE_MS);
+            swell *= (float) Math.exp(-dt * BASE_DELAY_MS / SWELL_FADE_MS);
+            source.drain(noteSink);
+        }
+        int n = activeCount;
+        stepper.step(x, y, vx, vy, n, dt * (1f + PULSE_SURGE * pulse), bg.width, bg.height, px, py);
+
+        drawing = backFrame(bg);
+        drawCount = n;
+        drawSprites = Math.min(n, spriteCount);
+        drawGlow = glow;
+        drawBoost = Math.round(PULSE_LEVELS * pulse + SWELL_LEVELS * swell);
+        if (rasterizers == null) {
+            drawBand(0);
+        } else {
+            try {
+                rasterizers.invokeAll(bandTasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        synchronized (this) {
+            front = drawing;
+        }
+        return true;
+    }
+
+    private void onNote(long nanos, long payload) {
+        float velocity = NoteBridge.velocity(payload) / 127f;
+        int channel = NoteBridge.channel(payload);
+        if (channel == Arrangement.CHANNEL[Arrangement.MELODY]) {
+            pulse = Math.max(pulse, velocity);
+        } else if (channel == Arrangement.CHANNEL[Arrangement.CHORD]
+                || channel == Arrangement.CHANNEL[Arrangement.PAD]) {
+            swell = Math.max(swell, velocity);
+        }
+    }
+
+    // A frame that is neither published nor being painted, sized to the background
+    private synchronized int backFrame(Background bg) {
+        if (frames[0] == null || frames[0].getWidth() != bg.width || frames[0].getHeight() != bg.height) {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = new BufferedImage(bg.width, bg.height, BufferedImage.TYPE_INT_RGB);
+                framePixels[i] = ((DataBufferInt) frames[i].getRaster().getDataBuffer()).getData();
+            }
+            front = -1;
+        }
+        for (int i = 0; i < frames.length; i++) {
+            if (i != front && i != painting) return i;
+        }
+        throw new IllegalStateException("no free frame");
+    }
+
+    // Copies the background rows of one band, then adds every dot over them
+    private void drawBand(int band) {
+        Background bg = background;
+        int[] dst = framePixels[drawing];
+        int w = bg.width;
+        int rowFrom = bg.height * band / bands;
+        int rowTo = bg.height * (band + 1) / bands;
+        if (dst.length != bg.pixels.length) return; // resized mid-frame; the next frame catches up
+        System.arraycopy(bg.pixels, rowFrom * w, dst, rowFrom * w, (rowTo - rowFrom) * w);
+
+        Atlas a = atlas;
+        int[] src = a.pixels;
+        int srcWidth = a.width;
+        int sprites = drawSprites;
+        int boost = drawBoost;
+        for (int i = 0; i < sprites; i++) {
+            int cell = brighter(sprite[i], boost);
+            int row = cell / ALPHA_LEVELS;
+            int glowSpan = a.span[row];
+            int inset = drawGlow ? 0 : a.inset[row];
+            int span = glowSpan - inset * 2;
+            int top = py[i] - glowSpan / 2 + inset;
+            int from = Math.max(top, rowFrom);
+            int to = Math.min(top + span, rowTo);
+            if (from >= to) continue;
+            int left = px[i] - glowSpan / 2 + inset;
+            int colFrom = Math.max(left, 0);
+            int colTo = Math.min(left + span, w);
+            if (colFrom >= colTo) continue;
+
+            int sx = (cell % ALPHA_LEVELS) * a.cell + inset + (colFrom - left);
+            int sy = row * a.cell + inset + (from - top);
+            int width = colTo - colFrom;
+            for (int y = from; y < to; y++, sy++) {
+                int s = sy * srcWidth + sx;
+                int d = y * w + colFrom;
+                for (int c = 0; c < width; c++) {
+                    dst[d + c] = addSaturated(dst[d + c], src[s + c]);
+                }
+            }
+        }
+
+        int[] colour = a.centre;
+        for (int i = sprites, n = drawCount; i < n; i++) {
+            int row = py[i];
+            if (row < rowFrom || row >= rowTo) continue;
+            int d = row * w + Math.min(px[i], w - 1); // x * width can round up to width
+            dst[d] = addSaturated(dst[d], colour[brighter(sprite[i], boost)]);
+        }
+    }
+
+    // The same sprite up to boost alpha levels brighter
+    private static int brighter(int cell, int boost) {
+        return cell + Math.min(boost, ALPHA_LEVELS - 1 - cell % ALPHA_LEVELS);
+    }
+
+    // Adds the RGB bytes of a premultiplied sprite pixel to a frame pixel,
+    // clamping each channel at 255 without unpacking it
+    private static int addSaturated(int dst, int src) {
+        src &= 0xffffff;
+        dst &= 0xffffff;
+        int sum = dst + src;
+        int carry = (sum ^ dst ^ src) & 0x1010100;
+        sum -= carry;
+        return sum | (carry - (carry >>> 8));
+    }
+
+    private static final class Atlas {
+        final int[] pixels;
+        final int width;
+        final int cell;
+        final int[] span; // per dot size
+        final int[] inset;
+        final int[] centre; // centre pixel of each sprite
+
+        Atlas(int[] pixels, int width, float scale) {
+            this.pixels = pixels;
+            this.width = width;
+            cell = atlasCell(scale);
+            int sizes = SPRITE_MAX_SIZE - SPRITE_MIN_SIZE + 1;
+            span = new int[sizes];
+            inset = new int[sizes];
+            for (int row = 0; row < sizes; row++) {
+                span[row] = glowSpan(SPRITE_MIN_SIZE + row, scale);
+                inset[row] = glowInset(SPRITE_MIN_SIZE + row, scale);
+            }
+            centre = new int[sizes * ALPHA_LEVELS];
+            for (int c = 0; c < centre.length; c++) {
+                int sx = (c % ALPHA_LEVELS) * cell + span[c / ALPHA_LEVELS] / 2;
+                int sy = (c / ALPHA_LEVELS) * cell + span[c / ALPHA_LEVELS] / 2;
+                centre[c] = pixels[sy * width + sx];
+            }
+        }
+    }
+
+    private static final class Background {
+        final int[] pixels;
+        final int width;
+        final int height;
+
+        Background(int[] pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+// PcmMixer.java (Low-latency live output from cached note audio)
+package astramelody;
+
+import java.util.Arrays;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays live notes by mixing {@link PcmNoteCache} buffers straight into a
+ * small {@link SourceDataLine}, bypassing the synthesizer's voice setup
+ * and its much larger output buffer. A dedicated thread mixes one short
+ * block at a time and blocks on the line, so the line's buffer is all the
+ * audio ever queued ahead of a new note.
+ *
+ * <p>Key events reach the mixer through an {@link EventRing}; the mixer
+ * thread allocates nothing. Input-to-audio latency is estimated per note
+ * as the time from the key event to the mix of its first block, plus the
+ * audio already queued in the line at that moment, and recorded in the
+ * {@code pcmLatency} stage of {@link Telemetry}.
+ */
+final class PcmMixer implements EventRing.Sink {
+
+    static final int BLOCK_FRAMES = 64;
+    private static final int FRAME_SIZE = PcmNoteCache.CHANNELS * 2;
+    private static final int MAX_VOICES = 16;
+
+    private final PcmNoteCache cache;
+    private final EventRing triggers = new EventRing(256);
+
+    // Voice table, owned by the mixer thread; null pcm = free
+    private final short[][] voicePcm = new short[MAX_VOICES][];
+    private final int[] voiceSlot = new int[MAX_VOICES];
+    private final int[] voicePosition = new int[MAX_VOICES]; // in samples
+    private final long[] voiceInput = new long[MAX_VOICES];  // key time until first mixed, then 0
+
+    private final int[] mix = new int[BLOCK_FRAMES * PcmNoteCache.CHANNELS];
+    private final byte[] block = new byte[BLOCK_FRAMES * FRAME_SIZE];
+
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean running;
+
+    PcmMixer(PcmNoteCache cache) {
+        this.cache = cache;
+    }
+
+    /** Opens the default output with a buffer of about {@code lineFrames} frames. */
+    synchronized void open(int lineFrames) throws LineUnavailableException {
+        if (line != null) return;
+        SourceDataLine output = AudioSystem.getSourceDataLine(PcmNoteCache.FORMAT);
+        output.open(PcmNoteCache.FORMAT, lineFrames * FRAME_SIZE);
+        output.start();
+        line = output;
+        running = true;
+        thread = new Thread(this::run, "pcm-mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Starts a note if its audio is cached; otherwise queues it for
+     * rendering and returns false so the caller can use the synthesizer.
+     */
+    synchronized boolean trigger(int program, int pitch, long inputNanos) {
+        if (!running || cache.get(program, pitch) == null) return false;
+        return triggers.offer(inputNanos, PcmNoteCache.slot(program, pitch));
+    }
+
+    /** Milliseconds of audio the output line can hold. */
+    synchronized double getLineMillis() {
+        return line == null ? 0 : line.getBufferSize() / (double) FRAME_SIZE * 1000 / PcmNoteCache.FORMAT.getSampleRate();
+    }
+
+    String latencySummary() {
+        StageStats stats = Telemetry.PCM_LATENCY;
+        return String.format("key-to-audio (PCM cache): p50 %.3f ms, p99 %.3f ms, max %.3f ms over %d notes; "
+                        + "line buffer %.1f ms, %d notes cached (%d KB), %d dropped",
+                stats.getP50Millis(), stats.getP99Millis(), stats.getMaxMillis(), stats.getCount(),
+                getLineMillis(), cache.size(), cache.getBytes() / 1024, triggers.dropped());
+    }
+
+    synchronized void close() {
+        if (line == null) return;
+        running = false;
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        line.stop();
+        line.close();
+        line = null;
+    }
+
+    private void run() {
+        while (running) {
+            triggers.drain(this);
+            mixBlock();
+            // Audio already queued plays before this block
+            long queuedNanos = (long) ((line.getBufferSize() - line.available()) / FRAME_SIZE
+                    * 1e9 / PcmNoteCache.FORMAT.getSampleRate());
+            long now = System.nanoTime();
+            for (int v = 0; v < MAX_VOICES; v++) {
+                if (voiceInput[v] != 0) {
+                    Telemetry.PCM_LATENCY.record(now - voiceInput[v] + queuedNanos, 1);
+                    voiceInput[v] = 0;
+                }
+            }
+            line.write(block, 0, block.length);
+        }
+    }
+
+    /** Starts a voice for a drained trigger; the payload is the cache slot. */
+    @Override
+    public void event(long nanos, long payload) {
+        int slot = (int) payload;
+        short[] pcm = cache.peek(slot);
+        if (pcm == null) return; // evicted since it was triggered
+
+        int voice = -1;
+        int oldest = 0;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voicePcm[v] != null && voiceSlot[v] == slot) {
+                voice = v; // re-trigger restarts the note
+                break;
+            }
+            if (voicePcm[v] == null) {
+                if (voice == -1) voice = v;
+            } else if (voicePosition[v] > voicePosition[oldest]) {
+                oldest = v;
+            }
+        }
+        if (voice == -1) voice = oldest; // steal the voice furthest into its note
+        voicePcm[voice] = pcm;
+        voiceSlot[voice] = slot;
+        voicePosition[voice] = 0;
+        voiceInput[voice] = nanos;
+    }
+
+    // Sums the active voices into one block of 16-bit little-endian samples
+    void mixBlock() {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < MAX_VOICES; v++) {
+            short[] pcm = voicePcm[v];
+            if (pcm == null) continue;
+            int position = voicePosition[v];
+            int n = Math.min(mix.length, pcm.length - position);
+            for (int i = 0; i < n; i++) {
+                mix[i] += pcm[position + i];
+            }
+            position += n;
+            if (position >= pcm.length) {
+                voicePcm[v] = null;
+            } else {
+                voicePosition[v] = position;
+            }
+        }
+        for (int i = 0; i < mix.length; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            block[2 * i] = (byte) sample;
+            block[2 * i + 1] = (byte) (sample >> 8);
+        }
+    }
+}
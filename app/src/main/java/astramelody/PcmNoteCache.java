@@ -0,0 +1,227 @@
+// PcmNoteCache.java (Pre-rendered audio for live notes)
+package astramelody;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.sound.midi.*;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Holds one pre-rendered, fixed-length PCM buffer per (program, pitch),
+ * bounced offline through the software synthesizer like
+ * {@link WavRenderer} does, so {@link PcmMixer} can start a live note by
+ * pointing a voice at an array. Buffers are rendered on a background
+ * thread, ahead of time by {@link #prewarm} or on the first request for
+ * a note that is missing.
+ *
+ * <p>Total size is bounded; the least recently played notes are evicted
+ * first. Buffers are published in an atomic slot table that the mixer
+ * reads without locking; a voice already playing an evicted buffer keeps
+ * its reference until it finishes.
+ */
+final class PcmNoteCache {
+
+    static final AudioFormat FORMAT = new AudioFormat(WavRenderer.SAMPLE_RATE, 16, 2, true, false);
+    static final int CHANNELS = 2;
+
+    private static final int FADE_FRAMES = 256; // end of each buffer, against clicks
+    private static final int RENDER_BLOCK_FRAMES = 1024;
+
+    private final int holdFrames;
+    private final int totalFrames;
+    private final long maxBytes;
+
+    // Indexed by slot(program, pitch); written by the render thread only
+    private final AtomicReferenceArray<short[]> slots = new AtomicReferenceArray<>(128 * 128);
+    private final LinkedHashMap<Integer, short[]> lru = new LinkedHashMap<>(64, 0.75f, true);
+    private final boolean[] pending = new boolean[128 * 128];
+    private long bytes;
+    private long evictions;
+
+    private final ExecutorService renderer;
+    // Render-thread state
+    private Synthesizer synth;
+    private AudioInputStream stream;
+    private Receiver receiver;
+    private final byte[] block = new byte[RENDER_BLOCK_FRAMES * CHANNELS * 2];
+
+    /**
+     * @param holdMillis how long each note is held before its release
+     * @param tailMillis how much of the release is kept after that
+     * @param maxBytes   bound on the total size of cached buffers
+     */
+    PcmNoteCache(long holdMillis, long tailMillis, long maxBytes) {
+        this.holdFrames = (int) (holdMillis * WavRenderer.SAMPLE_RATE / 1000);
+        this.totalFrames = holdFrames + (int) (tailMillis * WavRenderer.SAMPLE_RATE / 1000);
+        this.maxBytes = maxBytes;
+        renderer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pcm-render");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    static int slot(int program, int pitch) {
+        return program << 7 | pitch;
+    }
+
+    /** Bytes per cached note. */
+    long noteBytes() {
+        return (long) totalFrames * CHANNELS * 2;
+    }
+
+    /**
+     * The buffer for a note, or {@code null} if it is not rendered yet, in
+     * which case it is queued for rendering. Marks the note recently used.
+     */
+    short[] get(int program, int pitch) {
+        int slot = slot(program, pitch);
+        short[] pcm = slots.get(slot);
+        synchronized (this) {
+            if (pcm != null) {
+                lru.get(slot);
+            } else if (!pending[slot]) {
+                pending[slot] = true;
+                renderer.execute(() -> render(slot));
+            }
+        }
+        return pcm;
+    }
+
+    /** The buffer in {@code slot}, or {@code null}; lock-free, for the mixer. */
+    short[] peek(int slot) {
+        return slots.get(slot);
+    }
+
+    /** Queues every pitch in {@code [lowPitch, highPitch]} of each program for rendering. */
+    void prewarm(int[] programs, int lowPitch, int highPitch) {
+        for (int program : programs) {
+            for (int pitch = lowPitch; pitch <= highPitch; pitch++) {
+                get(program, pitch);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return lru.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Drops queued renders and closes the synthesizer once the current one finishes. */
+    void close() {
+        renderer.shutdownNow();
+        try {
+            renderer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (synth != null) synth.close();
+    }
+
+    private void render(int slot) {
+        try {
+            short[] pcm = renderNote(slot >>> 7, slot & 0x7f);
+            synchronized (this) {
+                pending[slot] = false;
+                lru.put(slot, pcm);
+                bytes += pcm.length * 2L;
+                slots.set(slot, pcm);
+                while (bytes > maxBytes && lru.size() > 1) {
+                    Map.Entry<Integer, short[]> eldest = lru.entrySet().iterator().next();
+                    lru.remove(eldest.getKey());
+                    slots.set(eldest.getKey(), null);
+                    bytes -= eldest.getValue().length * 2L;
+                    evictions++;
+                }
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                pending[slot] = false;
+            }
+            e.printStackTrace();
+        }
+    }
+
+    // Notes are rendered back to back on one long-lived stream; each starts
+    // from silence because the previous one is cut with all-sound-off
+    private short[] renderNote(int program, int pitch) throws IOException, MidiUnavailableException,
+            InvalidMidiDataException {
+        if (stream == null) {
+            synth = MidiSystem.getSynthesizer();
+            Map<String, Object> info = new HashMap<>();
+            info.put("interpolation", "linear");
+            stream = OfflineSynthesizer.openStream(synth, FORMAT, info);
+            receiver = synth.getReceiver();
+        }
+        receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, program, 0), -1);
+        receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, pitch, LivePlayEngine.VELOCITY), -1);
+
+        short[] pcm = new short[totalFrames * CHANNELS];
+        read(pcm, 0, holdFrames);
+        receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, pitch, 0), -1);
+        read(pcm, holdFrames, totalFrames - holdFrames);
+        receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 120, 0), -1); // all sound off
+        skip(RENDER_BLOCK_FRAMES);
+
+        // Start the buffer at the attack, not at the synthesizer's block boundary
+        int onset = 0;
+        while (onset < pcm.length && pcm[onset] == 0) onset++;
+        onset -= onset % CHANNELS;
+        if (onset > 0) {
+            System.arraycopy(pcm, onset, pcm, 0, pcm.length - onset);
+            Arrays.fill(pcm, pcm.length - onset, pcm.length, (short) 0);
+        }
+
+        int end = totalFrames - onset / CHANNELS;
+        int fade = Math.min(FADE_FRAMES, end);
+        for (int f = 0; f < fade; f++) {
+            int frame = end - fade + f;
+            for (int c = 0; c < CHANNELS; c++) {
+                int i = frame * CHANNELS + c;
+                pcm[i] = (short) (pcm[i] * (fade - f) / fade);
+            }
+        }
+        return pcm;
+    }
+
+    private void read(short[] pcm, int fromFrame, int frames) throws IOException {
+        int frame = fromFrame;
+        while (frame < fromFrame + frames) {
+            int n = Math.min(RENDER_BLOCK_FRAMES, fromFrame + frames - frame);
+            readFully(n * CHANNELS * 2);
+            for (int i = 0; i < n * CHANNELS; i++) {
+                pcm[frame * CHANNELS + i] = (short) ((block[2 * i] & 0xff) | block[2 * i + 1] << 8);
+            }
+            frame += n;
+        }
+    }
+
+    private void skip(int frames) throws IOException {
+        readFully(Math.min(frames, RENDER_BLOCK_FRAMES) * CHANNELS * 2);
+    }
+
+    private void readFully(int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = stream.read(block, read, length - read);
+            if (n < 0) throw new IOException("synthesizer stream ended");
+            read += n;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+// PlaybackQueue.java (Gapless queued and looped playback on one sequencer)
+package astramelody;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sound.midi.*;
+
+/**
+ * Plays melodies back to back on a single {@link Sequencer} without ever
+ * stopping it. The sequencer is given one rolling sequence, and each
+ * queued melody is compiled on a background thread and appended to it
+ * at the tick where the previous one ends, so the hand-off happens on the
+ * sequencer's own clock. Looping uses the sequencer's loop points over
+ * the melody that is playing, and tempo changes go straight to the
+ * running sequencer.
+ *
+ * <p>Events are only ever inserted at ticks the sequencer has not reached.
+ * Played melodies are pruned by swapping in fresh tracks holding the rest
+ * and setting the same sequence again, which makes the JDK real-time
+ * sequencer reindex without rewinding; it keeps reading the old tracks
+ * until then, so it never sees a half-pruned track.
+ *
+ * <p>Bars of the melody started by {@link #play} can be rewritten while it
+ * plays. It is played from the shared compiled arrangement; after the
+ * first {@link #replaceBar} the background thread lays it out as a
+ * {@link LiveSequence} and swaps that in for its events, and from then on
+ * edits patch the messages in place, once the play head is clear of the
+ * bars that change. The caller only pays for copying the notes. Playing
+ * the same melody again reuses the layout.
+ */
+public class PlaybackQueue {
+
+    // The rolling sequence runs at a finer resolution than the arrangement
+    // so that reindexing and tempo changes lose about a millisecond at most
+    private static final int TICK_SCALE = 120;
+    private static final int PPQ = Arrangement.RESOLUTION * TICK_SCALE;
+    // Silence kept after the last queued melody, in ticks, so a melody
+    // queued just as the previous one ends still joins without a restart
+    private static final long GUARD_TICKS = (long) Melody.NOTES_PER_BAR * Arrangement.TICKS_PER_NOTE * TICK_SCALE;
+    // Played melodies are dropped once the sequence holds this many events
+    private static final int PRUNE_EVENTS = 1 << 15;
+
+    private final Sequencer sequencer;
+    private final ExecutorService preparer;
+
+    private Sequence rolling;
+    private Track[] tracks;
+    private final ArrayDeque<long[]> segments = new ArrayDeque<>(); // {startTick, endTick} per melody
+    private long appendTick;
+    private long generation;
+    // The melody started by play, while it is in the sequence
+    private Melody playing;
+    private int playingProgram;
+    private long[] playingSegment;
+    private MidiEvent[][] playingEvents; // its events per layer, until live replaces them
+    private Melody edited; // it with every edit made so far, once replaceBar has been called
+    private LiveSequence live; // its editable layout, built after the first replaceBar
+    private int tempoBPM = 120;
+    private boolean looping;
+
+    public PlaybackQueue(Sequencer sequencer) {
+        this.sequencer = sequencer;
+        preparer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "playback-queue");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Drops anything queued and starts {@code melody} now. */
+    public void play(Melody melody, int program) throws InvalidMidiDataException {
+        LiveSequence reuse;
+        synchronized (this) {
+            reuse = live != null && playingProgram == program && live.melody().equals(melody) ? live : null;
+        }
+        Sequence compiled = reuse != null ? reuse.sequence() : ArrangementCompiler.shared().compile(melody, program);
+        synchronized (this) {
+            generation++;
+            sequencer.stop();
+            reset();
+            MidiEvent[][] events = append(compiled, melody.length());
+            playing = melody;
+            playingProgram = program;
+            playingSegment = segments.peekLast();
+            playingEvents = reuse == null ? events : null;
+            live = reuse;
+        }
+    }
+
+    /**
+     * Replaces bar {@code bar} of {@code melody} with the four notes at
+     * {@code offset} of {@code notes}, without stopping playback, if
+     * {@code melody} is the one last started by {@link #play} and is still
+     * in the sequence.
+     *
+     * @return the edited melody, or {@code null} if {@code melody} is not live
+     */
+    public synchronized Melody replaceBar(Melody melody, int bar, int[] notes, int offset) {
+        Melody current = edited != null ? edited : playing;
+        if (current == null || current != melody) return null;
+        edited = melody.withBar(bar, notes, offset);
+        long[] segment = playingSegment;
+        int[] barNotes = Arrays.copyOfRange(notes, offset, offset + Melody.NOTES_PER_BAR);
+        // One thread, so edits are applied in the order they were made
+        preparer.execute(() -> {
+            try {
+                edit(segment, bar, barNotes);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        return edited;
+    }
+
+    // Lays out the playing melody on the first edit, then plans the edit
+    // and applies it; gives up if the melody has left the sequence
+    private void edit(long[] segment, int bar, int[] barNotes) throws InvalidMidiDataException, InterruptedException {
+        LiveSequence target;
+        Melody melody;
+        int program;
+        MidiEvent[][] replaced;
+        synchronized (this) {
+            if (playingSegment != segment) return;
+            target = live;
+            melody = playing;
+            program = playingProgram;
+            replaced = playingEvents;
+        }
+        if (target == null) {
+            // Lays out the whole piece, so outside the lock
+            target = new LiveSequence(melody, program);
+            synchronized (this) {
+                if (playingSegment != segment) return;
+                live = target;
+                playingEvents = null;
+            }
+            install(target, replaced);
+        }
+        applyWhenClear(target, target.setBar(bar, barNotes, 0));
+    }
+
+    // Swaps the events of the playing melody for the identical ones of its
+    // live layout, which the sequencer then reads after a reindex; like a
+    // prune, only while the play head is between grid lines
+    private void install(LiveSequence target, MidiEvent[][] replaced)
+            throws InvalidMidiDataException, InterruptedException {
+        while (true) {
+            synchronized (this) {
+                if (live != target) return;
+                if (!sequencer.isRunning() || betweenGridLines(sequencer.getTickPosition())) {
+                    swapIn(target, replaced);
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private void swapIn(LiveSequence target, MidiEvent[][] replaced) throws InvalidMidiDataException {
+        Set<MidiEvent> old = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MidiEvent[] layer : replaced) {
+            old.addAll(Arrays.asList(layer));
+        }
+        long start = playingSegment[0];
+        Track[] source = target.sequence().getTracks();
+        Track[] swapped = new Track[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            rolling.deleteTrack(tracks[layer]);
+        }
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            // The live events go first so that, as when they were appended,
+            // they come before later melodies' events on the same tick
+            List<MidiEvent> merged = new ArrayList<>();
+            for (int i = 0; i < source[layer].size(); i++) {
+                MidiEvent event = source[layer].get(i);
+                if (event.getMessage() instanceof MetaMessage) continue;
+                merged.add(new MidiEvent(event.getMessage(), start + event.getTick() * TICK_SCALE));
+            }
+            for (int i = 0; i < tracks[layer].size(); i++) {
+                MidiEvent event = tracks[layer].get(i);
+                if (!old.contains(event)) merged.add(event);
+            }
+            merged.sort(Comparator.comparingLong(MidiEvent::getTick));
+            swapped[layer] = rolling.createTrack();
+            for (MidiEvent event : merged) {
+                swapped[layer].add(event);
+            }
+        }
+        tracks = swapped;
+        sequencer.setSequence(rolling);
+    }
+
+    // Waits until the play head is outside the patched ticks, with a note
+    // of margin ahead of them, then rewrites the messages; the sequencer
+    // only reads a message when it reaches its event
+    private void applyWhenClear(LiveSequence target, LiveSequence.Patch patch)
+            throws InvalidMidiDataException, InterruptedException {
+        while (true) {
+            long waitTicks;
+            synchronized (this) {
+                if (live != target) {
+                    patch.apply();
+                    return;
+                }
+                long from = playingSegment[0] + patch.fromTick() * TICK_SCALE;
+                long to = playingSegment[0] + patch.toTick() * TICK_SCALE;
+                long tick = sequencer.getTickPosition();
+                if (!sequencer.isRunning() || tick < from - Arrangement.TICKS_PER_NOTE * TICK_SCALE || tick >= to) {
+                    patch.apply();
+                    return;
+                }
+                waitTicks = to - tick;
+            }
+            Thread.sleep(Math.max(1, waitTicks * 60_000 / ((long) tempoBPM * PPQ)));
+        }
+    }
+
+    /**
+     * Queues {@code melody} to start when everything before it has played.
+     * It is compiled on a background thread; if nothing is playing by the
+     * time it is ready, playback starts with it.
+     */
+    public void enqueue(Melody melody, int program) {
+        long queuedIn;
+        synchronized (this) {
+            queuedIn = generation;
+        }
+        preparer.execute(() -> {
+            try {
+                Sequence compiled = ArrangementCompiler.shared().compile(melody, program);
+                synchronized (this) {
+                    if (queuedIn == generation) append(compiled, melody.length());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Repeats the melody that is playing until looping is turned off. */
+    public synchronized void setLooping(boolean looping) {
+        this.looping = looping;
+        applyLoop();
+    }
+
+    public synchronized boolean isLooping() {
+        return looping;
+    }
+
+    public synchronized void setTempo(int tempoBPM) {
+        this.tempoBPM = tempoBPM;
+        sequencer.setTempoInBPM(tempoBPM);
+    }
+
+    /** Melodies appended to the sequence that have not finished playing. */
+    public synchronized int getQueued() {
+        long tick = sequencer.isRunning() ? sequencer.getTickPosition() : Long.MAX_VALUE;
+        int queued = 0;
+        for (long[] segment : segments) {
+            if (segment[1] > tick) queued++;
+        }
+        return queued;
+    }
+
+    public synchronized void stop() {
+        generation++;
+        sequencer.stop();
+        segments.clear();
+        forgetPlaying();
+    }
+
+    public void close() {
+        stop();
+        preparer.shutdownNow();
+    }
+
+    private void reset() throws InvalidMidiDataException {
+        rolling = new Sequence(Sequence.PPQ, PPQ);
+        tracks = new Track[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            tracks[layer] = rolling.createTrack();
+        }
+        segments.clear();
+        appendTick = 0;
+        forgetPlaying();
+    }
+
+    private void forgetPlaying() {
+        playing = null;
+        playingSegment = null;
+        playingEvents = null;
+        edited = null;
+        live = null;
+    }
+
+    // Returns the events added, per layer
+    private MidiEvent[][] append(Sequence compiled, int notes) throws InvalidMidiDataException {
+        boolean running = sequencer.isRunning() && rolling != null;
+        long start = appendTick;
+        if (running) {
+            // Join at the end of the queue, or just ahead of the play head
+            // if the queue has already drained into the guard, on the next
+            // grid line so that pruning's phase check holds for it too
+            long ahead = sequencer.getTickPosition() + TICK_SCALE;
+            start = Math.max(start, (ahead + TICK_SCALE - 1) / TICK_SCALE * TICK_SCALE);
+        } else {
+            reset();
+        }
+
+        Track[] source = compiled.getTracks();
+        MidiEvent[][] added = new MidiEvent[Arrangement.LAYERS][];
+        long length = 0; // to the last note-off
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            added[layer] = new MidiEvent[source[layer].size() - 1];
+            int n = 0;
+            for (int i = 0; i < source[layer].size(); i++) {
+                MidiEvent event = source[layer].get(i);
+                if (event.getMessage() instanceof MetaMessage) continue; // end of track
+                MidiEvent copy = new MidiEvent(event.getMessage(), start + event.getTick() * TICK_SCALE);
+                tracks[layer].add(copy);
+                added[layer][n++] = copy;
+            }
+            length = Math.max(length, source[layer].ticks() * TICK_SCALE);
+        }
+        // The next melody starts one note after this one's last note, as a
+        // continuation of the grid; longer voices ring on into it
+        long end = start + (long) notes * Arrangement.TICKS_PER_NOTE * TICK_SCALE;
+        segments.addLast(new long[]{start, end});
+        appendTick = end;
+
+        MetaMessage endOfTrack = new MetaMessage(0x2f, new byte[0], 0);
+        for (Track track : tracks) {
+            track.add(new MidiEvent(endOfTrack, Math.max(end, start + length) + GUARD_TICKS));
+        }
+
+        if (running) {
+            prune();
+        } else {
+            sequencer.setSequence(rolling);
+            sequencer.setTickPosition(0);
+            sequencer.setTempoInBPM(tempoBPM);
+            sequencer.start();
+        }
+        applyLoop();
+        return added;
+    }
+
+    // Drops melodies that have finished playing, keeping the one under the
+    // play head, then makes the sequencer reindex its read positions
+    private void prune() throws InvalidMidiDataException {
+        int events = 0;
+        for (Track track : tracks) {
+            events += track.size();
+        }
+        if (events < PRUNE_EVENTS) return;
+
+        // The reindex resumes from the last tick dispatched, replaying any
+        // events on exactly that tick; events sit on the arrangement grid,
+        // so only prune while the play head is well between grid lines
+        long tick = sequencer.getTickPosition();
+        if (!betweenGridLines(tick)) return;
+
+        while (segments.size() > 1 && segments.peekFirst()[1] <= tick) {
+            if (segments.removeFirst() == playingSegment) forgetPlaying();
+        }
+        long keepFrom = segments.peekFirst()[0];
+        if (keepFrom == 0) return;
+
+        // Build replacement tracks with every event from keepFrom on; the
+        // sequencer goes on reading the old ones until the swap below
+        Track[] kept = new Track[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            rolling.deleteTrack(tracks[layer]);
+        }
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            Track old = tracks[layer];
+            kept[layer] = rolling.createTrack();
+            for (int i = firstAtOrAfter(old, keepFrom); i < old.size(); i++) {
+                kept[layer].add(old.get(i));
+            }
+        }
+        tracks = kept;
+        // Setting the same sequence again only reindexes; it does not rewind
+        sequencer.setSequence(rolling);
+    }
+
+    private static boolean betweenGridLines(long tick) {
+        long phase = tick % TICK_SCALE;
+        return phase >= TICK_SCALE / 8 && phase <= TICK_SCALE * 7 / 8;
+    }
+
+    private static int firstAtOrAfter(Track track, long tick) {
+        int low = 0;
+        int high = track.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (track.get(mid).getTick() < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void applyLoop() {
+        if (rolling == null) return;
+        if (looping && !segments.isEmpty()) {
+            long tick = sequencer.getTickPosition();
+            long[] current = segments.peekFirst();
+            for (long[] segment : segments) {
+                if (segment[0] <= tick && tick < segment[1]) {
+                    current = segment;
+                    break;
+                }
+            }
+            sequencer.setLoopEndPoint(-1);
+            sequencer.setLoopStartPoint(current[0]);
+            sequencer.setLoopEndPoint(current[1]);
+            sequencer.setLoopCount(Sequencer.LOOP_CONTINUOUSLY);
+        } else {
+            sequencer.setLoopCount(0);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// SeededRandom.java (Reusable SplitMix64 stream)
+package astramelody;
+
+/**
+ * A tiny mutable SplitMix64 generator, the same algorithm behind
+ * {@link java.util.SplittableRandom}, that can be re-seeded in place so a
+ * worker can walk many independent streams without allocating.
+ *
+ * <p>Streams are derived with {@link #derive(long, long)}, which makes the
+ * numbers for a given (seed, stream) pair independent of which thread
+ * consumes them or in which order.
+ */
+final class SeededRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    SeededRandom() {
+    }
+
+    SeededRandom(long seed) {
+        this.state = seed;
+    }
+
+    SeededRandom reset(long seed) {
+        this.state = seed;
+        return this;
+    }
+
+    /** Seed for sub-stream {@code stream} of {@code seed}. */
+    static long derive(long seed, long stream) {
+        return mix64(seed + (stream + 1) * GOLDEN_GAMMA);
+    }
+
+    long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    int nextInt(int bound) {
+        // Lemire's multiply-shift; bias is negligible for the small bounds used here
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,128 @@
+// SmfReader.java (Memory-mapped Standard MIDI File note reader)
+package astramelody;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Pulls note starts out of a Standard MIDI File without building a
+ * {@link javax.sound.midi.Sequence}. The file is memory-mapped and its
+ * tracks are walked in place, decoding only delta times and status bytes;
+ * the result is a primitive array, so a corpus of many files can be read
+ * on parallel threads with little garbage.
+ *
+ * <p>Instances are not thread-safe; use one per thread and reuse it.
+ */
+public final class SmfReader {
+
+    private static final int DRUM_CHANNEL = 9;
+
+    // Note starts packed as (tick << 8) | pitch
+    private long[] notes = new long[1024];
+    private int count;
+
+    /**
+     * The melodic top line of {@code file}: for every tick where notes
+     * start on a non-drum channel, the highest of them, in time order.
+     */
+    public int[] readTopLine(Path file) throws IOException {
+        count = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("file too large: " + file);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            parse(buf);
+        } catch (IndexOutOfBoundsException | java.nio.BufferUnderflowException e) {
+            throw new IOException("truncated MIDI file: " + file, e);
+        }
+
+        Arrays.sort(notes, 0, count);
+        int[] line = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            // Sorted by tick then pitch, so the last note of a tick is the highest
+            if (i + 1 < count && (notes[i + 1] >>> 8) == (notes[i] >>> 8)) continue;
+            line[n++] = (int) (notes[i] & 0x7f);
+        }
+        return Arrays.copyOf(line, n);
+    }
+
+    private void parse(MappedByteBuffer buf) throws IOException {
+        if (buf.getInt(0) != 0x4d546864) throw new IOException("not a MIDI file"); // "MThd"
+        int headerLength = buf.getInt(4);
+        int tracks = buf.getShort(10) & 0xffff;
+        int pos = 8 + headerLength;
+        int limit = buf.limit();
+
+        for (int t = 0; t < tracks && pos + 8 <= limit; ) {
+            int type = buf.getInt(pos);
+            int length = buf.getInt(pos + 4);
+            int start = pos + 8;
+            int end = start + length;
+            if (length < 0 || end > limit) throw new IOException("bad chunk length");
+            if (type == 0x4d54726b) { // "MTrk"
+                parseTrack(buf, start, end);
+                t++;
+            }
+            pos = end;
+        }
+    }
+
+    private void parseTrack(MappedByteBuffer buf, int pos, int end) throws IOException {
+        long tick = 0;
+        int runningStatus = 0;
+        while (pos < end) {
+            // Delta time
+            int delta = 0;
+            int b;
+            do {
+                b = buf.get(pos++) & 0xff;
+                delta = (delta << 7) | (b & 0x7f);
+            } while ((b & 0x80) != 0);
+            tick += delta;
+
+            int status = buf.get(pos) & 0xff;
+            if (status >= 0x80) {
+                pos++;
+            } else if (runningStatus == 0) {
+                throw new IOException("data byte without status");
+            } else {
+                status = runningStatus;
+            }
+
+            if (status == 0xff || status == 0xf0 || status == 0xf7) {
+                if (status == 0xff) pos++; // meta type
+                int length = 0;
+                do {
+                    b = buf.get(pos++) & 0xff;
+                    length = (length << 7) | (b & 0x7f);
+                } while ((b & 0x80) != 0);
+                pos += length;
+                runningStatus = 0;
+                continue;
+            }
+
+            runningStatus = status;
+            int command = status & 0xf0;
+            if (command == 0xc0 || command == 0xd0) {
+                pos++;
+                continue;
+            }
+            int data1 = buf.get(pos) & 0x7f;
+            int data2 = buf.get(pos + 1) & 0x7f;
+            pos += 2;
+            if (command == 0x90 && data2 > 0 && (status & 0x0f) != DRUM_CHANNEL) {
+                add((tick << 8) | data1);
+            }
+        }
+    }
+
+    private void add(long packed) {
+        if (count == notes.length) notes = Arrays.copyOf(notes, count * 2);
+        notes[count++] = packed;
+    }
+}
@@ -0,0 +1,308 @@
+// SmfWriter.java (Streaming Standard MIDI File writer)
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the layered arrangement of a melody as a type-1 Standard MIDI
+ * File directly from the note array, one track per layer, without building
+ * a {@link javax.sound.midi.Sequence}. Events are encoded in tick order
+ * with delta times and running status as they are produced, so memory use
+ * does not depend on the length of the piece.
+ *
+ * <p>Without a tempo the output is byte-for-byte what
+ * {@code MidiSystem.write(sequence, 1, file)} produces for the sequence
+ * built by {@link ArrangementCompiler}.
+ */
+public final class SmfWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PENDING = 64;
+    private static final int PROGRESS_INTERVAL = 8192; // notes; power of two
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private WritableByteChannel channel;
+    private long written;
+
+    // Note-offs waiting for their tick, packed as (tick << 8) | pitch, sorted by tick
+    private final long[] pending = new long[MAX_PENDING];
+    private int pendingCount;
+
+    private int runningStatus;
+    private long lastTick;
+
+    private TaskPipeline.Progress progress;
+
+    public static void write(Melody melody, int program, int tempoBPM, File file) throws IOException {
+        write(melody, program, tempoBPM, file, null);
+    }
+
+    /**
+     * Writes to {@code file}, reporting to {@code progress} if it is not null.
+     * If the task is cancelled or writing fails, including through the
+     * interrupt that cancelling sends, the partial file is deleted.
+     */
+    public static void write(Melody melody, int program, int tempoBPM, File file,
+                             TaskPipeline.Progress progress) throws IOException {
+        Telemetry.MidiWriteEvent event = new Telemetry.MidiWriteEvent();
+        event.begin();
+        long start = System.nanoTime();
+        SmfWriter writer = new SmfWriter();
+        writer.progress = progress;
+        boolean written = false;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.writeSeekable(melody, program, tempoBPM, ch);
+            written = true;
+        } finally {
+            if (!written) Files.deleteIfExists(file.toPath());
+        }
+        record(event, start, melody, writer.written);
+        if (progress != null) progress.report(100);
+    }
+
+    /**
+     * Streams the file to a non-seekable destination. Track lengths are
+     * measured in a first pass, so nothing is buffered beyond one block.
+     */
+    public static void write(Melody melody, int program, int tempoBPM, OutputStream out) throws IOException {
+        Telemetry.MidiWriteEvent event = new Telemetry.MidiWriteEvent();
+        event.begin();
+        long start = System.nanoTime();
+        WritableByteChannel ch = Channels.newChannel(out);
+        SmfWriter writer = new SmfWriter();
+        long[] lengths = new long[Arrangement.LAYERS];
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            lengths[layer] = writer.measureTrack(melody, program, tempoBPM, layer);
+        }
+
+        writer.begin(ch);
+        writer.writeHeader();
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            writer.writeChunkHeader(lengths[layer]);
+            writer.encodeTrack(melody, program, tempoBPM, layer);
+        }
+        writer.flush();
+        out.flush();
+        record(event, start, melody, writer.written);
+    }
+
+    private static void record(Telemetry.MidiWriteEvent event, long start, Melody melody, long bytes) {
+        Telemetry.MIDI_WRITE.record(System.nanoTime() - start, bytes);
+        if (event.shouldCommit()) {
+            event.notes = melody.length();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /** Size in bytes of the file {@link #write} would produce. */
+    public static long size(Melody melody, int program, int tempoBPM) throws IOException {
+        SmfWriter writer = new SmfWriter();
+        long size = 14;
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            size += 8 + writer.measureTrack(melody, program, tempoBPM, layer);
+        }
+        return size;
+    }
+
+    private void writeSeekable(Melody melody, int program, int tempoBPM, FileChannel ch) throws IOException {
+        begin(ch);
+        writeHeader();
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            long lengthPosition = written + 4;
+            writeChunkHeader(0);
+            long start = written;
+            encodeTrack(melody, program, tempoBPM, layer);
+            flush();
+
+            // Back-patch the chunk length now that the track is written
+            ByteBuffer length = ByteBuffer.allocate(4).putInt((int) (written - start));
+            length.flip();
+            ch.write(length, lengthPosition);
+        }
+    }
+
+    private long measureTrack(Melody melody, int program, int tempoBPM, int layer) throws IOException {
+        begin(new CountingChannel());
+        encodeTrack(melody, program, tempoBPM, layer);
+        flush();
+        return written;
+    }
+
+    private void begin(WritableByteChannel ch) {
+        channel = ch;
+        written = 0;
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        ensure(14);
+        buffer.putInt(0x4d546864); // "MThd"
+        buffer.putInt(6);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) Arrangement.LAYERS);
+        buffer.putShort((short) Arrangement.RESOLUTION);
+        written += 14;
+    }
+
+    private void writeChunkHeader(long length) throws IOException {
+        ensure(8);
+        buffer.putInt(0x4d54726b); // "MTrk"
+        buffer.putInt((int) length);
+        written += 8;
+    }
+
+    private void encodeTrack(Melody melody, int program, int tempoBPM, int layer) throws IOException {
+        runningStatus = -1;
+        lastTick = 0;
+        pendingCount = 0;
+
+        int channelNumber = Arrangement.CHANNEL[layer];
+        int velocity = Arrangement.VELOCITY[layer];
+        int noteOn = 0x90 | channelNumber;
+        int noteOff = 0x80 | channelNumber;
+
+        if (layer == 0 && tempoBPM > 0) {
+            int mpq = 60_000_000 / tempoBPM;
+            writeMeta(0, 0x51, mpq >> 16, mpq >> 8, mpq);
+        }
+        writeShort(0, 0xc0 | channelNumber, program, -1);
+
+        Arrangement.forEachEvent(melody, layer, new Arrangement.Sink<IOException>() {
+            @Override
+            public void step(int index, int note) throws IOException {
+                if (progress != null && (index & (PROGRESS_INTERVAL - 1)) == 0) {
+                    progress.checkCancelled();
+                    progress.report((int) ((layer * (long) melody.length() + index) * 100
+                            / (Arrangement.LAYERS * (long) melody.length())));
+                }
+            }
+
+            @Override
+            public void voice(int voiceLayer, int v, int pitch, long on, long off) throws IOException {
+                if (pitch < 0 || pitch > 127) {
+                    throw new IOException("pitch out of range: " + pitch);
+                }
+                flushPending(on, noteOff, velocity);
+                writeShort(on, noteOn, pitch, velocity);
+                addPending(off, pitch);
+            }
+        });
+        flushPending(Long.MAX_VALUE, noteOff, velocity);
+
+        writeMeta(lastTick, 0x2f);
+    }
+
+    private void addPending(long tick, int pitch) {
+        long packed = (tick << 8) | pitch;
+        int i = pendingCount++;
+        // Insert after every pending off with a tick <= this one
+        while (i > 0 && (pending[i - 1] >>> 8) > tick) {
+            pending[i] = pending[i - 1];
+            i--;
+        }
+        pending[i] = packed;
+    }
+
+    private void flushPending(long upToTick, int status, int velocity) throws IOException {
+        int n = 0;
+        while (n < pendingCount && (pending[n] >>> 8) <= upToTick) {
+            writeShort(pending[n] >>> 8, status, (int) (pending[n] & 0xff), velocity);
+            n++;
+        }
+        if (n > 0) {
+            System.arraycopy(pending, n, pending, 0, pendingCount - n);
+            pendingCount -= n;
+        }
+    }
+
+    private void writeShort(long tick, int status, int data1, int data2) throws IOException {
+        ensure(9);
+        writeDelta(tick);
+        if (status != runningStatus) {
+            buffer.put((byte) status);
+            written++;
+            runningStatus = status;
+        }
+        buffer.put((byte) data1);
+        written++;
+        if (data2 >= 0) {
+            buffer.put((byte) data2);
+            written++;
+        }
+    }
+
+    private void writeMeta(long tick, int type, int... data) throws IOException {
+        ensure(8 + data.length);
+        writeDelta(tick);
+        buffer.put((byte) 0xff);
+        buffer.put((byte) type);
+        buffer.put((byte) data.length);
+        for (int b : data) {
+            buffer.put((byte) b);
+        }
+        written += 3 + data.length;
+        runningStatus = -1;
+    }
+
+    private void writeDelta(long tick) {
+        long delta = tick - lastTick;
+        lastTick = tick;
+        if (delta >= 1L << 28) {
+            throw new IllegalStateException("delta time too large: " + delta);
+        }
+        int value = (int) delta;
+        int shift = 21;
+        while (shift > 0 && (value >>> shift) == 0) {
+            shift -= 7;
+        }
+        while (shift > 0) {
+            buffer.put((byte) (0x80 | ((value >>> shift) & 0x7f)));
+            written++;
+            shift -= 7;
+        }
+        buffer.put((byte) (value & 0x7f));
+        written++;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static final class CountingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
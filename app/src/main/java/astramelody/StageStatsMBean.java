@@ -0,0 +1,24 @@
+// StageStatsMBean.java (JMX view of one instrumented stage)
+package astramelody;
+
+/**
+ * Timing of one stage as seen from JConsole or Mission Control, under
+ * {@code astramelody:type=Stage,name=<stage>}.
+ */
+public interface StageStatsMBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /** Stage-specific size summed over all calls: notes, MIDI events or bytes. */
+    long getTotalItems();
+
+    void reset();
+}
@@ -0,0 +1,136 @@
+// TaskPipeline.java (Background work for the UI)
+package astramelody;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs slow UI actions (generation, playback setup, export) on a small
+ * pool of background threads. Each task belongs to a named stage; submitting
+ * to a stage cancels whatever that stage was still doing, so repeated
+ * clicks collapse into the latest one. Progress, results and errors are
+ * delivered on the EDT, and only for the task that is still current.
+ */
+public class TaskPipeline {
+
+    public interface Task<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /** Handed to a running task to report progress and poll for cancellation. */
+    public static final class Progress {
+        private final IntConsumer listener;
+        private final Entry entry;
+        private int lastPercent = -1;
+
+        private Progress(IntConsumer listener, Entry entry) {
+            this.listener = listener;
+            this.entry = entry;
+        }
+
+        public void report(int percent) {
+            if (percent == lastPercent || listener == null) return;
+            lastPercent = percent;
+            SwingUtilities.invokeLater(() -> {
+                if (!entry.cancelled) listener.accept(percent);
+            });
+        }
+
+        public boolean isCancelled() {
+            return entry.cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        public void checkCancelled() {
+            if (isCancelled()) throw new CancellationException();
+        }
+    }
+
+    private static final class Entry {
+        volatile boolean cancelled;
+        Future<?> future;
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Entry> current = new HashMap<>();
+
+    public TaskPipeline(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "astramelody-task-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts {@code task} in {@code stage}, cancelling the stage's previous
+     * task. Callbacks run on the EDT; {@code onProgress} may be null.
+     */
+    public synchronized <T> void submit(String stage, Task<T> task, IntConsumer onProgress,
+                                        Consumer<T> onDone, Consumer<Exception> onError) {
+        cancel(stage);
+
+        Entry entry = new Entry();
+        Progress progress = new Progress(onProgress, entry);
+        current.put(stage, entry);
+        entry.future = executor.submit(() -> {
+            try {
+                T result = task.run(progress);
+                progress.checkCancelled();
+                SwingUtilities.invokeLater(() -> {
+                    if (finish(stage, entry)) onDone.accept(result);
+                });
+            } catch (CancellationException e) {
+                finish(stage, entry);
+            } catch (Exception e) {
+                // Cancelling interrupts the worker, which surfaces from
+                // channel I/O as ClosedByInterruptException and the like
+                if (entry.cancelled) {
+                    finish(stage, entry);
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (finish(stage, entry)) onError.accept(e);
+                });
+            }
+        });
+    }
+
+    public synchronized void cancel(String stage) {
+        Entry entry = current.remove(stage);
+        if (entry != null) {
+            entry.cancelled = true;
+            entry.future.cancel(true);
+        }
+    }
+
+    public synchronized void cancelAll() {
+        for (String stage : current.keySet().toArray(new String[0])) {
+            cancel(stage);
+        }
+    }
+
+    public synchronized boolean isBusy() {
+        return !current.isEmpty();
+    }
+
+    // Clears the stage if this entry is still its current task
+    private synchronized boolean finish(String stage, Entry entry) {
+        if (entry.cancelled || current.get(stage) != entry) return false;
+        current.remove(stage);
+        return true;
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,108 @@
+// Telemetry.java (JFR events and JMX stage metrics)
+package astramelody;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Performance instrumentation of the hot stages. Each stage keeps a
+ * {@link StageStats} histogram registered with the platform MBean server
+ * as {@code astramelody:type=Stage,name=<stage>}, and emits a JFR event
+ * per call so a recording in Mission Control shows exactly which call was
+ * slow. Events are cheap when no recording is running.
+ */
+final class Telemetry {
+
+    static final StageStats GENERATE = register("generate");
+    static final StageStats SEQUENCE_BUILD = register("sequenceBuild");
+    static final StageStats MIDI_WRITE = register("midiWrite");
+    static final StageStats PAINT = register("paint");
+    static final StageStats PARTICLE_FRAME = register("particleFrame");
+    static final StageStats LIVE_LATENCY = register("liveLatency");
+    static final StageStats PCM_LATENCY = register("pcmLatency");
+    static final StageStats HTTP = register("http");
+    static final StageStats SCHEDULE_JITTER = register("scheduleJitter");
+
+    private Telemetry() {
+    }
+
+    private static StageStats register(String name) {
+        StageStats stats = new StageStats();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("astramelody:type=Stage,name=" + name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(stats, objectName);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return stats;
+    }
+
+    @Name("astramelody.Generate")
+    @Label("Melody Generation")
+    @Category("AstraMelody")
+    static final class GenerateEvent extends Event {
+        @Label("Bars")
+        int bars;
+    }
+
+    @Name("astramelody.SequenceBuild")
+    @Label("Sequence Build")
+    @Category("AstraMelody")
+    static final class SequenceBuildEvent extends Event {
+        @Label("Notes")
+        int notes;
+
+        @Label("MIDI Events")
+        int events;
+    }
+
+    @Name("astramelody.MidiWrite")
+    @Label("MIDI File Write")
+    @Category("AstraMelody")
+    static final class MidiWriteEvent extends Event {
+        @Label("Notes")
+        int notes;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("astramelody.Paint")
+    @Label("Background Paint")
+    @Category("AstraMelody")
+    @StackTrace(false)
+    static final class PaintEvent extends Event {
+        @Label("Quality Level")
+        int qualityLevel;
+
+        @Label("Dots")
+        int dots;
+    }
+
+    @Name("astramelody.LiveNote")
+    @Label("Live Note")
+    @Description("Key event to noteOn on the live synthesizer")
+    @Category("AstraMelody")
+    @StackTrace(false)
+    static final class LiveNoteEvent extends Event {
+        @Label("Note")
+        int note;
+
+        @Label("Input Latency")
+        @Timespan
+        long latency;
+    }
+}
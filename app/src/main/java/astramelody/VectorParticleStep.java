@@ -0,0 +1,51 @@
+// VectorParticleStep.java (Particle motion with the incubator Vector API)
+package astramelody;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ParticleStep} over the widest float vectors the CPU has, with the
+ * edge wrap done by masked adds instead of branches. Only loaded when the
+ * {@code jdk.incubator.vector} module is present; the tail that does not
+ * fill a vector goes through the scalar loop. Pixel coordinates are taken
+ * in a plain loop afterwards, which C2 vectorizes itself: the incubator's
+ * float to int conversion is not compiled to a vector instruction on JDK 17
+ * and costs more than the rest of the step.
+ */
+final class VectorParticleStep implements ParticleStep {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void step(float[] x, float[] y, float[] vx, float[] vy, int n, float dt,
+                     float width, float height, int[] px, int[] py) {
+        int bound = SPECIES.loopBound(n);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            move(x, vx, i, dt);
+            move(y, vy, i, dt);
+        }
+        ParticleStep.Scalar.step(x, y, vx, vy, bound, n, dt, width, height, px, py);
+        for (int i = 0; i < bound; i++) {
+            px[i] = (int) (x[i] * width);
+            py[i] = (int) (y[i] * height);
+        }
+    }
+
+    private static void move(float[] p, float[] v, int i, float dt) {
+        FloatVector next = FloatVector.fromArray(SPECIES, p, i)
+                .add(FloatVector.fromArray(SPECIES, v, i).mul(dt));
+        VectorMask<Float> below = next.compare(VectorOperators.LT, 0f);
+        next = next.add(1f, below);
+        VectorMask<Float> above = next.compare(VectorOperators.GE, 1f);
+        next = next.sub(1f, above);
+        next.intoArray(p, i);
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
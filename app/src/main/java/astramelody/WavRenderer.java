@@ -0,0 +1,189 @@
+// WavRenderer.java (Offline audio bounce to WAV)
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.sound.midi.*;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Renders the layered arrangement of a melody to a 16-bit stereo WAV file
+ * through the JDK software synthesizer in streaming mode. No audio line is
+ * opened: the synthesizer produces samples only as fast as they are read,
+ * so rendering runs as fast as the CPU allows and works on headless
+ * machines without a sound card. Each render uses its own synthesizer, so
+ * renders on different threads run in parallel.
+ *
+ * <p>Streaming mode is opened through {@link OfflineSynthesizer}, which
+ * needs {@code java.desktop/com.sun.media.sound} exported at run time.
+ */
+public final class WavRenderer {
+
+    public static final float SAMPLE_RATE = 44100f;
+    private static final int CHANNELS = 2;
+    private static final int FRAME_SIZE = CHANNELS * 2;
+    private static final int HEADER_SIZE = 44;
+    private static final int TAIL_MILLIS = 1500; // let the last notes release
+    private static final int BUFFER_FRAMES = 4096;
+    private static final int PROGRESS_INTERVAL = 1024; // notes; power of two
+
+    private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+
+    private final byte[] samples = new byte[BUFFER_FRAMES * FRAME_SIZE];
+    private final ByteBuffer sampleBuffer = ByteBuffer.wrap(samples);
+    private final Arrangement.Messages messages = new Arrangement.Messages();
+
+    private AudioInputStream stream;
+    private FileChannel channel;
+    private long framesRendered;
+
+    private WavRenderer() {
+    }
+
+    public static void write(Melody melody, int program, int tempoBPM, File file) throws IOException {
+        write(melody, program, tempoBPM, file, null);
+    }
+
+    /**
+     * Renders to {@code file}, reporting to {@code progress} if it is not
+     * null. If the task is cancelled or writing fails, including through
+     * the interrupt that cancelling sends, the partial file is deleted.
+     */
+    public static void write(Melody melody, int program, int tempoBPM, File file,
+                             TaskPipeline.Progress progress) throws IOException {
+        boolean written = false;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new WavRenderer().render(melody, program, tempoBPM, ch, progress);
+            written = true;
+        } catch (MidiUnavailableException | InvalidMidiDataException e) {
+            throw new IOException("cannot render " + file, e);
+        } finally {
+            if (!written) Files.deleteIfExists(file.toPath());
+        }
+        if (progress != null) progress.report(100);
+    }
+
+    /** Length in frames of the audio {@link #write} produces. */
+    public static long frames(Melody melody, int tempoBPM) {
+        long microsPerTick = microsPerTick(tempoBPM);
+        return frameAt(lastTick(melody) * microsPerTick) + frameAt(TAIL_MILLIS * 1000L);
+    }
+
+    private void render(Melody melody, int program, int tempoBPM, FileChannel ch,
+                        TaskPipeline.Progress progress)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        Synthesizer synth = MidiSystem.getSynthesizer();
+        Map<String, Object> info = new HashMap<>();
+        info.put("interpolation", "linear");
+        info.put("max polyphony", 256);
+        stream = OfflineSynthesizer.openStream(synth, FORMAT, info);
+        channel = ch;
+        framesRendered = 0;
+        try {
+            long totalFrames = frames(melody, tempoBPM);
+            writeHeader(totalFrames);
+
+            Receiver receiver = synth.getReceiver();
+            for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+                receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, Arrangement.CHANNEL[layer], program, 0), -1);
+            }
+
+            // Queue each note's events with timestamps, then pull audio up to
+            // the note's start; the synthesizer orders queued events by time
+            long microsPerTick = microsPerTick(tempoBPM);
+            Arrangement.forEachEvent(melody, new Arrangement.Sink<IOException>() {
+                @Override
+                public void step(int index, int note) throws IOException {
+                    if (progress != null && (index & (PROGRESS_INTERVAL - 1)) == 0) {
+                        progress.checkCancelled();
+                        progress.report((int) (index * 100L / melody.length()));
+                    }
+                    renderTo(frameAt((long) index * Arrangement.TICKS_PER_NOTE * microsPerTick));
+                }
+
+                @Override
+                public void voice(int layer, int v, int pitch, long on, long off) throws IOException {
+                    try {
+                        receiver.send(messages.get(layer, true, pitch), on * microsPerTick);
+                        receiver.send(messages.get(layer, false, pitch), off * microsPerTick);
+                    } catch (InvalidMidiDataException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                }
+            });
+            renderTo(totalFrames);
+        } finally {
+            synth.close();
+        }
+    }
+
+    private void renderTo(long frame) throws IOException {
+        while (framesRendered < frame) {
+            int frames = (int) Math.min(BUFFER_FRAMES, frame - framesRendered);
+            int bytes = frames * FRAME_SIZE;
+            int read = 0;
+            while (read < bytes) {
+                int n = stream.read(samples, read, bytes - read);
+                if (n < 0) throw new IOException("synthesizer stream ended");
+                read += n;
+            }
+            sampleBuffer.clear().limit(bytes);
+            while (sampleBuffer.hasRemaining()) {
+                channel.write(sampleBuffer);
+            }
+            framesRendered += frames;
+        }
+    }
+
+    private void writeHeader(long totalFrames) throws IOException {
+        long dataSize = totalFrames * FRAME_SIZE;
+        if (dataSize > 0xffffffffL - HEADER_SIZE) {
+            throw new IOException("too long for a WAV file: " + totalFrames + " frames");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952); // "RIFF"
+        header.putInt((int) (dataSize + HEADER_SIZE - 8));
+        header.putInt(0x45564157); // "WAVE"
+        header.putInt(0x20746d66); // "fmt "
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) CHANNELS);
+        header.putInt((int) SAMPLE_RATE);
+        header.putInt((int) SAMPLE_RATE * FRAME_SIZE);
+        header.putShort((short) FRAME_SIZE);
+        header.putShort((short) 16);
+        header.putInt(0x61746164); // "data"
+        header.putInt((int) dataSize);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static long lastTick(Melody melody) {
+        int maxOff = 0;
+        for (int layer = 0; layer < Arrangement.LAYERS; layer++) {
+            for (int v = 0; v < Arrangement.voiceCount(layer); v++) {
+                maxOff = Math.max(maxOff, Arrangement.offOffset(layer, v));
+            }
+        }
+        return melody.length() == 0 ? 0 : (long) (melody.length() - 1) * Arrangement.TICKS_PER_NOTE + maxOff;
+    }
+
+    private static long microsPerTick(int tempoBPM) {
+        return 60_000_000L / (tempoBPM * (long) Arrangement.RESOLUTION);
+    }
+
+    private static long frameAt(long micros) {
+        return (long) (micros * (double) SAMPLE_RATE / 1_000_000);
+    }
+}
@@ -0,0 +1,44 @@
+package astramelody;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Melody generation at increasing bar counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MelodyGeneratorBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int bars;
+
+    private final MelodyGenerator generator = new MelodyGenerator();
+    private int[] buffer;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        buffer = new int[bars * Melody.NOTES_PER_BAR];
+    }
+
+    @Benchmark
+    public Melody generate() {
+        return generator.generate("A Minor", "Sad", bars, seed++);
+    }
+
+    @Benchmark
+    public int[] generateInto() {
+        generator.generateInto("A Minor", "Sad", bars, seed++, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object generateBoxedList() {
+        return generator.generateMelody("A Minor", "Sad", bars);
+    }
+}
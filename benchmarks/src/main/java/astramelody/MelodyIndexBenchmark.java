@@ -0,0 +1,41 @@
+package astramelody;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Near-duplicate lookups against an index of previously generated melodies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MelodyIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int indexed;
+
+    private final MelodyGenerator generator = new MelodyGenerator();
+    private MelodyIndex index;
+    private Melody[] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        index = new MelodyIndex(0.8);
+        for (int i = 0; i < indexed; i++) {
+            index.add(generator.generate("C Major", "Happy", 16, i));
+        }
+        queries = new Melody[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = generator.generate("C Major", "Happy", 16, -1 - i);
+        }
+    }
+
+    @Benchmark
+    public boolean containsSimilar() {
+        return index.containsSimilar(queries[next++ & (queries.length - 1)]);
+    }
+}
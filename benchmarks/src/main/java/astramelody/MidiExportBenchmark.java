@@ -0,0 +1,51 @@
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Writing a melody to a {@code .mid} file on disk: the streaming writer
+ * against the Sequence + {@link MidiSystem#write} path it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MidiExportBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int bars;
+
+    private Melody melody;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        melody = new MelodyGenerator().generate("C Major", "Happy", bars, 42);
+        file = File.createTempFile("astramelody-bench", ".mid");
+        file.deleteOnExit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long smfWriter() throws IOException {
+        SmfWriter.write(melody, 0, 0, file);
+        return file.length();
+    }
+
+    @Benchmark
+    public long sequenceWrite() throws IOException, InvalidMidiDataException {
+        MidiSystem.write(new ArrangementCompiler(1).compileUncached(melody, 0), 1, file);
+        return file.length();
+    }
+}
@@ -0,0 +1,54 @@
+package astramelody;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One frame of {@link ParticleBackgroundPanel#paintComponent} rendered
+ * into an offscreen image, headless: the EDT's share of the animation,
+ * which copies the frame the simulation last published. Setup publishes
+ * one frame of dots at the default level; drawing frames is measured by
+ * {@link ParticleSimulationBenchmark#frame}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParticlePaintBenchmark {
+
+    @Param({"1280x720", "1920x1080"})
+    public String size;
+
+    private ParticleBackgroundPanel panel;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        int x = size.indexOf('x');
+        int w = Integer.parseInt(size.substring(0, x));
+        int h = Integer.parseInt(size.substring(x + 1));
+        panel = new ParticleBackgroundPanel();
+        panel.setSize(w, h);
+        image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+        // The first paint hands the panel's starfield and dot sprites to the simulation
+        panel.paintComponent(g);
+        if (!panel.simulation().drawFrame(1f)) throw new IllegalStateException("no frame drawn");
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        panel.paintComponent(g);
+        return image;
+    }
+}
@@ -0,0 +1,78 @@
+package astramelody;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One {@link ParticleStep} over every particle, and one whole
+ * {@link ParticleSimulation} frame at 1080p, at the default and the
+ * densest quality level, with each motion kernel. The step does not depend
+ * on the level.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class ParticleSimulationBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"2", "8"})
+    public int level;
+
+    private ParticleStep stepper;
+    private ParticleSimulation simulation;
+    private float[] x, y, vx, vy;
+    private int[] px, py;
+
+    @Setup
+    public void setup() {
+        stepper = kernel.equals("vector") ? new VectorParticleStep() : new ParticleStep.Scalar();
+        int n = ParticleSimulation.MAX_PARTICLES;
+        x = new float[n];
+        y = new float[n];
+        vx = new float[n];
+        vy = new float[n];
+        px = new int[n];
+        py = new int[n];
+        Random rnd = new Random(7);
+        for (int i = 0; i < n; i++) {
+            x[i] = rnd.nextFloat();
+            y[i] = rnd.nextFloat();
+            vx[i] = (rnd.nextFloat() - 0.5f) * 0.0003f;
+            vy[i] = (rnd.nextFloat() - 0.5f) * 0.0003f;
+        }
+
+        simulation = new ParticleSimulation(stepper, 7, () -> { });
+        BufferedImage atlas = new BufferedImage(ParticleSimulation.ALPHA_LEVELS * ParticleSimulation.SPRITE_CELL,
+                (ParticleSimulation.SPRITE_MAX_SIZE - ParticleSimulation.SPRITE_MIN_SIZE + 1) * ParticleSimulation.SPRITE_CELL,
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        simulation.setAtlas(pixels(atlas), atlas.getWidth(), 1f);
+        simulation.setBackground(pixels(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), WIDTH, HEIGHT);
+        simulation.applyQuality(level);
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    @Benchmark
+    public int[] stepAll() {
+        stepper.step(x, y, vx, vy, x.length, 1f, WIDTH, HEIGHT, px, py);
+        return px;
+    }
+
+    @Benchmark
+    public boolean frame() {
+        return simulation.drawFrame(1f);
+    }
+}
@@ -0,0 +1,41 @@
+package astramelody;
+
+import java.util.concurrent.TimeUnit;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Building the layered playback {@link Sequence}, cold and from the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceBuildBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int bars;
+
+    private Melody melody;
+    private ArrangementCompiler compiler;
+
+    @Setup
+    public void setup() throws InvalidMidiDataException {
+        melody = new MelodyGenerator().generate("C Major", "Happy", bars, 42);
+        compiler = new ArrangementCompiler(4);
+        compiler.compile(melody, 0);
+    }
+
+    @Benchmark
+    public Sequence compileUncached() throws InvalidMidiDataException {
+        return compiler.compileUncached(melody, 0);
+    }
+
+    @Benchmark
+    public Sequence compileCached() throws InvalidMidiDataException {
+        return compiler.compile(melody, 0);
+    }
+}
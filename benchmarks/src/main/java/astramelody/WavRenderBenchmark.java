@@ -0,0 +1,45 @@
+package astramelody;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Offline rendering of a melody to a WAV file. Divide the audio length
+ * (two seconds per bar at 120 BPM, plus the release tail) by the score to
+ * get the speed-up over real time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true",
+        "--add-exports", "java.desktop/com.sun.media.sound=ALL-UNNAMED"})
+public class WavRenderBenchmark {
+
+    @Param({"4", "16"})
+    public int bars;
+
+    private Melody melody;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        melody = new MelodyGenerator().generate("C Major", "Happy", bars, 42);
+        file = File.createTempFile("astramelody-bench", ".wav");
+        file.deleteOnExit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long render() throws IOException {
+        WavRenderer.write(melody, 0, 120, file);
+        return file.length();
+    }
+}